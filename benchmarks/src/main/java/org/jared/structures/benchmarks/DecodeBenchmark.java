@@ -0,0 +1,152 @@
+package org.jared.structures.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jared.structures.nbt.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes the same bytes through {@link LegacyNBTReader}, which reads every primitive through
+ * {@link EndianSwitchableInputStream}, and through {@link NBTInputStream}'s buffer window. The {@code bytes} counter is
+ * the uncompressed NBT decoded per second, so the two can be compared as bytes/s.
+ *
+ * <p>{@code structure} is a 48 cube from {@link StructureGenerator}, dominated by small compounds; {@code region} is
+ * the 1024 chunks of a region file with four sections each, dominated by int, long and byte arrays.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark
+{
+    private static final int STRUCTURE_SIZE = 48;
+    private static final int REGION_CHUNKS = 32 * 32;
+    private static final int CHUNK_SECTIONS = 4;
+
+    @Param({"structure", "region"})
+    public String input;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private byte[] data;
+    private int uncompressedLength;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters
+    {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException
+    {
+        CompoundTag tag = input.equals("region") ? createRegion() : StructureGenerator.generate(STRUCTURE_SIZE);
+        data = StructureGenerator.toBytes(tag, compressed);
+        uncompressedLength = NBTOutputStream.sizeOf(tag);
+    }
+
+    @Benchmark
+    public Tag endianSwitchableInputStream(Counters counters) throws IOException
+    {
+        Tag tag = new LegacyNBTReader(new ByteArrayInputStream(data), compressed).readTag();
+        counters.bytes += uncompressedLength;
+        return tag;
+    }
+
+    @Benchmark
+    public Tag byteBufferWindow(Counters counters) throws IOException
+    {
+        try (NBTInputStream inputStream = new NBTInputStream(new ByteArrayInputStream(data), compressed))
+        {
+            Tag tag = inputStream.readNamedTag().getTag();
+            counters.bytes += uncompressedLength;
+            return tag;
+        }
+    }
+
+    /**
+     * Chunks in the 1.13 layout, minus entities: biomes and height map int arrays, and per section the packed block
+     * states and both light arrays.
+     */
+    private static CompoundTag createRegion()
+    {
+        Random random = new Random(StructureGenerator.DEFAULT_SEED);
+
+        List<Tag> chunks = Lists.newArrayListWithCapacity(REGION_CHUNKS);
+        for (int i = 0; i < REGION_CHUNKS; i++)
+        {
+            List<Tag> sections = Lists.newArrayListWithCapacity(CHUNK_SECTIONS);
+            for (int y = 0; y < CHUNK_SECTIONS; y++)
+            {
+                Map<String, Tag> section = Maps.newHashMap();
+                section.put("Y", new ByteTag((byte) y));
+                section.put("BlockStates", new LongArrayTag(randomLongs(random, 256)));
+                section.put("BlockLight", new ByteArrayTag(randomBytes(random, 2048)));
+                section.put("SkyLight", new ByteArrayTag(randomBytes(random, 2048)));
+                sections.add(new CompoundTag(section));
+            }
+
+            Map<String, Tag> level = Maps.newHashMap();
+            level.put("xPos", new IntTag(i % 32));
+            level.put("zPos", new IntTag(i / 32));
+            level.put("LastUpdate", new LongTag(random.nextLong()));
+            level.put("Status", new StringTag("postprocessed"));
+            level.put("Biomes", new IntArrayTag(randomInts(random, 256)));
+            level.put("HeightMap", new IntArrayTag(randomInts(random, 256)));
+            level.put("Sections", new ListTag(CompoundTag.class, sections));
+
+            Map<String, Tag> chunk = Maps.newHashMap();
+            chunk.put("DataVersion", new IntTag(StructureGenerator.CURRENT_DATA_VERSION));
+            chunk.put("Level", new CompoundTag(level));
+            chunks.add(new CompoundTag(chunk));
+        }
+
+        Map<String, Tag> region = Maps.newHashMap();
+        region.put("chunks", new ListTag(CompoundTag.class, chunks));
+        return new CompoundTag(region);
+    }
+
+    private static int[] randomInts(Random random, int length)
+    {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            values[i] = random.nextInt(256);
+        }
+        return values;
+    }
+
+    private static long[] randomLongs(Random random, int length)
+    {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++)
+        {
+            values[i] = random.nextLong();
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(Random random, int length)
+    {
+        byte[] values = new byte[length];
+        random.nextBytes(values);
+        return values;
+    }
+}
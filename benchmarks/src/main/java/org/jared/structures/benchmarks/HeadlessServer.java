@@ -0,0 +1,101 @@
+package org.jared.structures.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+/**
+ * A stand-in {@link Server} so that palette resolution can run outside a server. Block data is a plain proxy that
+ * only knows its material; it is never {@code Directional}, so benchmarks using it measure the structure's own work
+ * and not CraftBukkit's block state parsing.
+ */
+final class HeadlessServer
+{
+    private HeadlessServer()
+    {
+    }
+
+    static synchronized void install()
+    {
+        if (Bukkit.getServer() != null)
+            return;
+
+        Logger logger = Logger.getLogger("HeadlessServer");
+        Bukkit.setServer((Server) Proxy.newProxyInstance(HeadlessServer.class.getClassLoader(), new Class<?>[]{Server.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getLogger":
+                    return logger;
+                case "getName":
+                case "getVersion":
+                case "getBukkitVersion":
+                    return "HeadlessServer";
+                case "createBlockData":
+                    return createBlockData(args != null && args.length > 0 && args[0] instanceof Material ? (Material) args[0] : Material.AIR);
+                default:
+                    return defaultValue(method);
+            }
+        }));
+    }
+
+    /**
+     * @return a world whose chunks are all loaded and which otherwise does nothing, for placements that write through
+     * their own {@link org.jared.structures.placement.BlockWriter}
+     */
+    static World createWorld()
+    {
+        return (World) Proxy.newProxyInstance(HeadlessServer.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "isChunkLoaded":
+                    return true;
+                case "getName":
+                    return "HeadlessWorld";
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private static BlockData createBlockData(Material material)
+    {
+        return (BlockData) Proxy.newProxyInstance(HeadlessServer.class.getClassLoader(), new Class<?>[]{BlockData.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMaterial":
+                    return material;
+                case "clone":
+                    return proxy;
+                case "getAsString":
+                case "toString":
+                    return material.getKey().toString();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private static Object defaultValue(Method method)
+    {
+        Class<?> type = method.getReturnType();
+        return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+}
@@ -0,0 +1,111 @@
+package org.jared.structures.benchmarks;
+
+import org.jared.structures.nbt.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The decoder {@link NBTInputStream} used before it read through a buffer window: every primitive is read from the
+ * (possibly GZIP) stream through {@link EndianSwitchableInputStream}. Only kept as the baseline for
+ * {@link DecodeBenchmark}, with the long array and string length bugs fixed so it decodes the same input.
+ */
+public final class LegacyNBTReader
+{
+    private final EndianSwitchableInputStream is;
+
+    public LegacyNBTReader(InputStream is, boolean compressed) throws IOException
+    {
+        this.is = new EndianSwitchableInputStream(compressed ? new GZIPInputStream(is) : is, ByteOrder.BIG_ENDIAN);
+    }
+
+    public Tag readTag() throws IOException
+    {
+        int type = is.readByte() & 0xFF;
+        readName(type);
+        return readTagPayload(type);
+    }
+
+    private String readName(int type) throws IOException
+    {
+        if (type == NBTConstants.TYPE_END)
+            return "";
+
+        byte[] nameBytes = new byte[is.readShort() & 0xFFFF];
+        is.readFully(nameBytes);
+        return new String(nameBytes, NBTConstants.CHARSET);
+    }
+
+    private Tag readTagPayload(int type) throws IOException
+    {
+        switch (type)
+        {
+            case NBTConstants.TYPE_BYTE:
+                return new ByteTag(is.readByte());
+            case NBTConstants.TYPE_SHORT:
+                return new ShortTag(is.readShort());
+            case NBTConstants.TYPE_INT:
+                return new IntTag(is.readInt());
+            case NBTConstants.TYPE_LONG:
+                return new LongTag(is.readLong());
+            case NBTConstants.TYPE_FLOAT:
+                return new FloatTag(is.readFloat());
+            case NBTConstants.TYPE_DOUBLE:
+                return new DoubleTag(is.readDouble());
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                byte[] bytes = new byte[is.readInt()];
+                is.readFully(bytes);
+                return new ByteArrayTag(bytes);
+            case NBTConstants.TYPE_STRING:
+                bytes = new byte[is.readShort() & 0xFFFF];
+                is.readFully(bytes);
+                return new StringTag(new String(bytes, NBTConstants.CHARSET));
+            case NBTConstants.TYPE_LIST:
+                int childType = is.readByte();
+                int length = is.readInt();
+
+                List<Tag> tagList = new ArrayList<>();
+                for (int i = 0; i < length; i++)
+                {
+                    tagList.add(readTagPayload(childType));
+                }
+
+                return new ListTag(NBTUtils.getTypeClass(childType), tagList);
+            case NBTConstants.TYPE_COMPOUND:
+                Map<String, Tag> tagMap = new HashMap<>();
+                while (true)
+                {
+                    int childTagType = is.readByte() & 0xFF;
+                    if (childTagType == NBTConstants.TYPE_END)
+                        break;
+
+                    String name = readName(childTagType);
+                    tagMap.put(name, readTagPayload(childTagType));
+                }
+
+                return new CompoundTag(tagMap);
+            case NBTConstants.TYPE_INT_ARRAY:
+                int[] data = new int[is.readInt()];
+                for (int i = 0; i < data.length; i++)
+                {
+                    data[i] = is.readInt();
+                }
+                return new IntArrayTag(data);
+            case NBTConstants.TYPE_LONG_ARRAY:
+                long[] longData = new long[is.readInt()];
+                for (int i = 0; i < longData.length; i++)
+                {
+                    longData[i] = is.readLong();
+                }
+                return new LongArrayTag(longData);
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+}
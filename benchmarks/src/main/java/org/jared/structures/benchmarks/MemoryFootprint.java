@@ -0,0 +1,63 @@
+package org.jared.structures.benchmarks;
+
+import com.google.common.collect.Maps;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.util.Vector;
+import org.jared.structures.storage.BlockStorage;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures with JOL the heap held by the blocks of a structure, stored as the per-block {@code HashMap<Vector,
+ * BlockData>} structures used to keep and as a {@link BlockStorage}. Both hold the same random blocks from a 12 state
+ * palette; the palette's block data is shared and not counted.
+ *
+ * <p>Run with {@code [sizeX sizeY sizeZ]}, 200x80x200 by default. The map needs about 350 MB of heap at that size.</p>
+ */
+public final class MemoryFootprint
+{
+    private static final Material[] MATERIALS = {Material.STONE, Material.COBBLESTONE, Material.OAK_PLANKS, Material.STONE_BRICKS, Material.GLASS, Material.DIRT, Material.GRASS_BLOCK, Material.SAND, Material.GRAVEL, Material.OAK_LOG, Material.BRICKS, Material.WHITE_WOOL};
+
+    private MemoryFootprint()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        int sizeX = args.length >= 3 ? Integer.parseInt(args[0]) : 200;
+        int sizeY = args.length >= 3 ? Integer.parseInt(args[1]) : 80;
+        int sizeZ = args.length >= 3 ? Integer.parseInt(args[2]) : 200;
+
+        HeadlessServer.install();
+        BlockData[] palette = new BlockData[MATERIALS.length];
+        for (int i = 0; i < palette.length; i++)
+        {
+            palette[i] = Bukkit.createBlockData(MATERIALS[i]);
+        }
+        long paletteBytes = GraphLayout.parseInstance((Object[]) palette).totalSize();
+
+        Random random = new Random(StructureGenerator.DEFAULT_SEED);
+        BlockStorage storage = new BlockStorage(sizeX, sizeY, sizeZ);
+        for (int i = 0; i < storage.getVolume(); i++)
+        {
+            storage.set(i, 1 + random.nextInt(palette.length));
+        }
+
+        long storageBytes = GraphLayout.parseInstance(storage).totalSize();
+        System.out.printf("BlockStorage:                %,d bytes (%d bits per block, estimated %,d)%n", storageBytes, storage.getBitsPerEntry(), storage.getRetainedBytes());
+
+        Map<Vector, BlockData> blockMap = Maps.newHashMap();
+        for (int i = 0; i < storage.getVolume(); i++)
+        {
+            blockMap.put(new Vector(storage.getX(i), storage.getY(i), storage.getZ(i)), palette[storage.get(i) - 1]);
+        }
+
+        long mapBytes = GraphLayout.parseInstance(blockMap).totalSize() - paletteBytes;
+        System.out.printf("HashMap<Vector, BlockData>:  %,d bytes%n", mapBytes);
+        System.out.printf("%dx%dx%d, %,d blocks: the map takes %.1fx the heap%n", sizeX, sizeY, sizeZ, storage.getVolume(), (double) mapBytes / storageBytes);
+    }
+}
@@ -0,0 +1,98 @@
+package org.jared.structures.benchmarks;
+
+import org.jared.structures.minecraftnbt.CompressedStreamTools;
+import org.jared.structures.minecraftnbt.NBTTagCompound;
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.NBTInputStream;
+import org.jared.structures.nbt.NBTOutputStream;
+import org.jared.structures.nbt.Tag;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and encoding of whole structure files, compressed as they are on disk and uncompressed to isolate the
+ * NBT work from GZIP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NBTBenchmark
+{
+    @Param({"16", "48", "96"})
+    public int size;
+
+    private CompoundTag structure;
+    private byte[] compressed;
+    private byte[] uncompressed;
+    private ByteArrayOutputStream output;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        structure = StructureGenerator.generate(size);
+        compressed = StructureGenerator.toBytes(structure, true);
+        uncompressed = StructureGenerator.toBytes(structure, false);
+        output = new ByteArrayOutputStream(uncompressed.length);
+        buffer = ByteBuffer.allocate(NBTOutputStream.sizeOf(structure));
+    }
+
+    @Benchmark
+    public Tag readNamedTag() throws IOException
+    {
+        try (NBTInputStream inputStream = new NBTInputStream(new ByteArrayInputStream(uncompressed), false))
+        {
+            return inputStream.readNamedTag().getTag();
+        }
+    }
+
+    @Benchmark
+    public Tag readNamedTagCompressed() throws IOException
+    {
+        try (NBTInputStream inputStream = new NBTInputStream(new ByteArrayInputStream(compressed), true))
+        {
+            return inputStream.readNamedTag().getTag();
+        }
+    }
+
+    @Benchmark
+    public int writeNamedTag() throws IOException
+    {
+        output.reset();
+        try (NBTOutputStream outputStream = new NBTOutputStream(output))
+        {
+            outputStream.writeNamedTag("", structure);
+        }
+
+        return output.size();
+    }
+
+    @Benchmark
+    public int writeNamedTagToBuffer() throws IOException
+    {
+        buffer.clear();
+        new NBTOutputStream(buffer).writeNamedTag("", structure);
+
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int sizeOf()
+    {
+        return NBTOutputStream.sizeOf(structure);
+    }
+
+    @Benchmark
+    public NBTTagCompound readCompressed() throws IOException
+    {
+        return CompressedStreamTools.readCompressed(new ByteArrayInputStream(compressed));
+    }
+}
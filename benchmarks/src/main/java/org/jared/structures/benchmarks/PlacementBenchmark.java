@@ -0,0 +1,105 @@
+package org.jared.structures.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.jared.structures.Structure;
+import org.jared.structures.StructureView;
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.placement.BlockWriter;
+import org.jared.structures.placement.PlacementOptions;
+import org.jared.structures.placement.PlacementTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placing a rotated structure in one go with {@link PlacementTask#placeAll()}, against a {@link HeadlessServer} world.
+ * Blocks go to a writer that only counts them and entities are not spawned, so this measures the placement's own
+ * work: ordering by chunk section, transforming the palette, block entities and the undo snapshot. Writing to a real
+ * world is CraftBukkit's work and needs a running server, so it is not covered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlacementBenchmark
+{
+    @Param({"16", "48", "96"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean captureUndo;
+
+    private StructureView view;
+    private Location base;
+    private CountingBlockWriter blockWriter;
+
+    @Setup
+    public void setup()
+    {
+        HeadlessServer.install();
+
+        Structure structure = new Structure();
+        structure.populateData(StructureGenerator.generate(size));
+        structure.resolvePalette();
+
+        view = structure.view().rotate(90);
+        base = new Location(HeadlessServer.createWorld(), 0, 64, 0);
+        blockWriter = new CountingBlockWriter();
+    }
+
+    @Benchmark
+    public int placeAll()
+    {
+        PlacementOptions options = new PlacementOptions()
+                .setBlockWriter(blockWriter)
+                .setCaptureUndo(captureUndo)
+                .setEntityAdapter((anchor, entity, uuids) -> null);
+
+        return new PlacementTask(view, base, options).placeAll().getPlacedBlocks();
+    }
+
+    /**
+     * Counts writes, and reads back air with no block entity when the undo snapshot is captured.
+     */
+    private static class CountingBlockWriter implements BlockWriter
+    {
+        private final BlockData air = Bukkit.createBlockData(Material.AIR);
+        private long blocks;
+        private long blockEntities;
+
+        @Override
+        public void setBlockData(World world, int x, int y, int z, BlockData data, boolean applyPhysics)
+        {
+            blocks++;
+        }
+
+        @Override
+        public void applyPhysics(World world, int x, int y, int z)
+        {
+        }
+
+        @Override
+        public void setBlockEntity(World world, int x, int y, int z, CompoundTag data)
+        {
+            blockEntities++;
+        }
+
+        @Override
+        public BlockData getBlockData(World world, int x, int y, int z)
+        {
+            return air;
+        }
+
+        @Override
+        public CompoundTag getBlockEntity(World world, int x, int y, int z)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.jared.structures.benchmarks;
+
+import org.jared.structures.Structure;
+import org.jared.structures.nbt.CompoundTag;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning structure data into a {@link Structure}, and rotating it. Palettes are resolved against a
+ * {@link HeadlessServer}; reading from a file includes the DataFixer pass on the palette and entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructureBenchmark
+{
+    @Param({"16", "48", "96"})
+    public int size;
+
+    private CompoundTag data;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        HeadlessServer.install();
+
+        data = StructureGenerator.generate(size);
+        file = StructureGenerator.write(data, Files.createTempFile("structure-" + size + "-", ".nbt"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Structure populateData()
+    {
+        Structure structure = new Structure();
+        structure.populateData(data);
+        return structure;
+    }
+
+    @Benchmark
+    public Structure readFromFile() throws IOException
+    {
+        Structure structure = new Structure();
+        structure.readFromFile(file);
+        return structure;
+    }
+
+    @Benchmark
+    public Structure rotate(RotateState state)
+    {
+        state.structure.rotate(90);
+        return state.structure;
+    }
+
+    /**
+     * Rotations are cumulative, so every invocation gets a fresh copy of the structure.
+     */
+    @State(Scope.Thread)
+    public static class RotateState
+    {
+        private Structure structure;
+
+        @Setup(Level.Invocation)
+        public void setup(StructureBenchmark benchmark)
+        {
+            structure = new Structure();
+            structure.populateData(benchmark.data);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.jared.structures.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jared.structures.nbt.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates structure files in the layout written by structure blocks: a cube of the given edge length in which every
+ * position is listed, a palette mixing plain blocks with blocks that have properties, a chest every few hundred blocks
+ * and an armor stand per 16x16 column. The output only depends on the size, seed and data version.
+ *
+ * <p>Run with {@code <directory> [sizes...]} to write {@code structure-<size>.nbt} files.</p>
+ */
+public final class StructureGenerator
+{
+    public static final int CURRENT_DATA_VERSION = 1631;
+    public static final int LEGACY_DATA_VERSION = 1343;
+    public static final long DEFAULT_SEED = 0x5EED;
+
+    private static final String[] PLAIN_BLOCKS = {"minecraft:air", "minecraft:stone", "minecraft:cobblestone", "minecraft:oak_planks", "minecraft:stone_bricks", "minecraft:glass", "minecraft:dirt", "minecraft:grass_block"};
+    private static final String[] FACINGS = {"north", "east", "south", "west"};
+    private static final int CHEST_INTERVAL = 509;
+
+    private StructureGenerator()
+    {
+    }
+
+    public static CompoundTag generate(int size)
+    {
+        return generate(size, DEFAULT_SEED, CURRENT_DATA_VERSION);
+    }
+
+    public static CompoundTag generate(int size, long seed, int dataVersion)
+    {
+        Random random = new Random(seed);
+        List<Tag> palette = createPalette();
+        int chestState = palette.size() - 1;
+
+        List<Tag> blocks = Lists.newArrayListWithCapacity(size * size * size);
+        for (int y = 0; y < size; y++)
+        {
+            for (int z = 0; z < size; z++)
+            {
+                for (int x = 0; x < size; x++)
+                {
+                    Map<String, Tag> block = Maps.newHashMap();
+                    block.put("pos", new IntListTag(new int[]{x, y, z}));
+
+                    if (blocks.size() % CHEST_INTERVAL == CHEST_INTERVAL - 1)
+                    {
+                        block.put("state", new IntTag(chestState));
+                        block.put("nbt", createChest(random));
+                    }
+                    else
+                    {
+                        //keep a third of the volume air, like most builds
+                        block.put("state", new IntTag(random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(chestState - 1)));
+                    }
+
+                    blocks.add(new CompoundTag(block));
+                }
+            }
+        }
+
+        List<Tag> entities = Lists.newArrayList();
+        for (int x = 0; x < size; x += 16)
+        {
+            for (int z = 0; z < size; z += 16)
+            {
+                entities.add(createArmorStand(x, z));
+            }
+        }
+
+        Map<String, Tag> structure = Maps.newHashMap();
+        structure.put("DataVersion", new IntTag(dataVersion));
+        structure.put("author", new StringTag("StructureGenerator"));
+        structure.put("size", new IntListTag(new int[]{size, size, size}));
+        structure.put("palette", new ListTag(CompoundTag.class, palette));
+        structure.put("blocks", new ListTag(CompoundTag.class, blocks));
+        structure.put("entities", new ListTag(CompoundTag.class, entities));
+
+        return new CompoundTag(structure);
+    }
+
+    public static byte[] toBytes(CompoundTag structure, boolean compressed) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compressed ? new GZIPOutputStream(bytes) : bytes; NBTOutputStream outputStream = new NBTOutputStream(out))
+        {
+            outputStream.writeNamedTag("", structure);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public static Path write(CompoundTag structure, Path path) throws IOException
+    {
+        Files.write(path, toBytes(structure, true));
+        return path;
+    }
+
+    private static List<Tag> createPalette()
+    {
+        List<Tag> palette = Lists.newArrayList();
+        for (String name : PLAIN_BLOCKS)
+        {
+            palette.add(createState(name, null));
+        }
+
+        for (String facing : FACINGS)
+        {
+            for (String half : new String[]{"bottom", "top"})
+            {
+                Map<String, Tag> properties = Maps.newHashMap();
+                properties.put("facing", new StringTag(facing));
+                properties.put("half", new StringTag(half));
+                properties.put("shape", new StringTag("straight"));
+                properties.put("waterlogged", new StringTag("false"));
+                palette.add(createState("minecraft:oak_stairs", properties));
+            }
+
+            Map<String, Tag> properties = Maps.newHashMap();
+            properties.put("facing", new StringTag(facing));
+            palette.add(createState("minecraft:wall_torch", properties));
+        }
+
+        for (String axis : new String[]{"x", "y", "z"})
+        {
+            Map<String, Tag> properties = Maps.newHashMap();
+            properties.put("axis", new StringTag(axis));
+            palette.add(createState("minecraft:oak_log", properties));
+        }
+
+        Map<String, Tag> properties = Maps.newHashMap();
+        properties.put("facing", new StringTag("north"));
+        properties.put("type", new StringTag("single"));
+        properties.put("waterlogged", new StringTag("false"));
+        palette.add(createState("minecraft:chest", properties));
+
+        return palette;
+    }
+
+    private static CompoundTag createState(String name, Map<String, Tag> properties)
+    {
+        Map<String, Tag> state = Maps.newHashMap();
+        state.put("Name", new StringTag(name));
+        if (properties != null)
+            state.put("Properties", new CompoundTag(properties));
+
+        return new CompoundTag(state);
+    }
+
+    private static CompoundTag createChest(Random random)
+    {
+        List<Tag> items = Lists.newArrayList();
+        for (int slot = 0; slot < 27; slot += 1 + random.nextInt(4))
+        {
+            Map<String, Tag> item = Maps.newHashMap();
+            item.put("Slot", new ByteTag((byte) slot));
+            item.put("id", new StringTag(PLAIN_BLOCKS[1 + random.nextInt(PLAIN_BLOCKS.length - 1)]));
+            item.put("Count", new ByteTag((byte) (1 + random.nextInt(64))));
+            items.add(new CompoundTag(item));
+        }
+
+        Map<String, Tag> chest = Maps.newHashMap();
+        chest.put("id", new StringTag("minecraft:chest"));
+        chest.put("Items", new ListTag(CompoundTag.class, items));
+
+        return new CompoundTag(chest);
+    }
+
+    private static CompoundTag createArmorStand(int x, int z)
+    {
+        Map<String, Tag> nbt = Maps.newHashMap();
+        nbt.put("id", new StringTag("minecraft:armor_stand"));
+        nbt.put("Pos", new DoubleListTag(new double[]{x + 0.5, 1, z + 0.5}));
+        nbt.put("Motion", new DoubleListTag(new double[]{0, 0, 0}));
+        nbt.put("Rotation", new FloatListTag(new float[]{0, 0}));
+        nbt.put("Invisible", new ByteTag((byte) 0));
+
+        Map<String, Tag> entity = Maps.newHashMap();
+        entity.put("pos", new DoubleListTag(new double[]{x + 0.5, 1, z + 0.5}));
+        entity.put("blockPos", new IntListTag(new int[]{x, 1, z}));
+        entity.put("nbt", new CompoundTag(nbt));
+
+        return new CompoundTag(entity);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: StructureGenerator <directory> [sizes...]");
+            System.exit(1);
+        }
+
+        Path directory = Files.createDirectories(Paths.get(args[0]));
+        String[] sizes = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"16", "48", "96"};
+
+        for (String size : sizes)
+        {
+            Path path = write(generate(Integer.parseInt(size)), directory.resolve("structure-" + size + ".nbt"));
+            System.out.println(path + ": " + Files.size(path) + " bytes");
+        }
+    }
+}
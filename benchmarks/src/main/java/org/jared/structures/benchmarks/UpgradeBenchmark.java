@@ -0,0 +1,42 @@
+package org.jared.structures.benchmarks;
+
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.util.NBTUpdater;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a structure through the DataFixer, both from a 1.12 data version and from the current one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpgradeBenchmark
+{
+    @Param({"16", "48"})
+    public int size;
+
+    @Param({"" + StructureGenerator.LEGACY_DATA_VERSION, "" + StructureGenerator.CURRENT_DATA_VERSION})
+    public int dataVersion;
+
+    private CompoundTag structure;
+
+    @Setup
+    public void setup()
+    {
+        structure = StructureGenerator.generate(size, StructureGenerator.DEFAULT_SEED, dataVersion);
+
+        //the first update bootstraps the fixer, keep that out of the measurement
+        NBTUpdater.updateData(StructureGenerator.generate(1, StructureGenerator.DEFAULT_SEED, dataVersion));
+    }
+
+    @Benchmark
+    public CompoundTag updateData()
+    {
+        return NBTUpdater.updateData(structure);
+    }
+}
@@ -2,27 +2,55 @@ package org.jared.structures;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.block.data.BlockData;
-import org.bukkit.block.data.Directional;
 import org.bukkit.entity.EntityType;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.util.Vector;
 import org.jared.structures.nbt.*;
+import org.jared.structures.nbt.util.NBTFiles;
 import org.jared.structures.nbt.util.NBTUpdater;
-import org.jared.structures.util.VectorUtil;
+import org.jared.structures.nbt.util.UpgradeCache;
+import org.jared.structures.placement.PlacementOptions;
+import org.jared.structures.placement.PlacementTask;
+import org.jared.structures.plugin.StructureMain;
+import org.jared.structures.storage.BlockEntityTable;
+import org.jared.structures.storage.BlockPalette;
+import org.jared.structures.storage.BlockStorage;
+import org.jared.structures.util.BlockTransform;
+import org.jared.structures.util.Mirror;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.util.concurrent.*;
 
 public class Structure
 {
     private int dimensions[];
-    private Map<Vector, BlockData> blockMap = Maps.newHashMap();
+    private int origin[] = new int[3];
+    private BlockStorage blocks;
+    private BlockEntityTable blockEntities = new BlockEntityTable();
+    private BlockPalette palette;
+    private ListTag paletteTags;
+    private List<ListTag> paletteVariants = Collections.emptyList();
+    private BlockPalette[] resolvedVariants = new BlockPalette[0];
+    private int selectedPalette;
+    private BlockTransform transform = BlockTransform.IDENTITY;
     private List<EntityInfo> entities = Lists.newArrayList();
 
     private NBTDataExtractor dataExtractor;
@@ -38,66 +66,352 @@ public class Structure
         this.dataExtractor = new NBTDataExtractor();
     }
 
+    /**
+     * Creates a resolved structure from blocks taken from a world, e.g. the positions a placement overwrote.
+     *
+     * @param origin the offset of the storage's first position from the placement anchor
+     */
+    public Structure(BlockStorage blocks, BlockPalette palette, BlockEntityTable blockEntities, int[] origin)
+    {
+        this();
+        this.dimensions = new int[]{blocks.getSizeX(), blocks.getSizeY(), blocks.getSizeZ()};
+        this.origin = origin.clone();
+        this.blocks = blocks;
+        this.blockEntities = blockEntities;
+        this.palette = palette;
+
+        //a single variant that is resolved from the start, without palette tags to resolve it from
+        this.resolvedVariants = new BlockPalette[]{palette};
+        this.selectedPalette = 0;
+    }
+
+    /**
+     * Places the whole structure immediately on the calling thread.
+     */
     public void place(Location base)
     {
-        for (Map.Entry<Vector, BlockData> blockEntry : blockMap.entrySet())
+        view().place(base);
+    }
+
+    /**
+     * Places the structure over several ticks, spending at most {@link PlacementOptions#getNanosPerTick()} per tick.
+     *
+     * @return the running task, whose future completes once placement is done
+     */
+    public PlacementTask place(Location base, Plugin plugin, PlacementOptions options)
+    {
+        return view().place(base, plugin, options);
+    }
+
+    /**
+     * @return an immutable view of the structure as it is now, which can be rotated and placed without copying blocks
+     */
+    public StructureView view()
+    {
+        if (!isResolved())
+            throw new IllegalStateException("Structure palette has not been resolved");
+
+        return new StructureView(this, palette);
+    }
+
+    /**
+     * Creates a view of another palette variant without selecting it, resolving the variant first if needed. Must be
+     * called on the server thread unless the variant has been resolved before.
+     *
+     * @see #selectPalette(int)
+     */
+    public StructureView view(int paletteIndex)
+    {
+        if (!isResolved())
+            throw new IllegalStateException("Structure palette has not been resolved");
+
+        return new StructureView(this, resolveVariant(paletteIndex));
+    }
+
+    /**
+     * Loads a structure file on {@code executor} and finishes it on the server thread of {@link StructureMain}.
+     *
+     * @see #loadAsync(Path, Executor, Executor)
+     */
+    public static CompletableFuture<Structure> loadAsync(Path path, Executor executor)
+    {
+        return loadAsync(path, executor, StructureMain.getInstance().getMainThreadExecutor());
+    }
+
+    /**
+     * Reads, upgrades and decodes a structure file on {@code executor}, then resolves its palette to
+     * {@link BlockData} on {@code mainThread}, the only step that needs Bukkit.
+     *
+     * <p>Cancelling the returned future interrupts the load if it is still running and skips the
+     * server thread step.</p>
+     */
+    public static CompletableFuture<Structure> loadAsync(Path path, Executor executor, Executor mainThread)
+    {
+        return loadAsync(path, executor, mainThread, null);
+    }
+
+    /**
+     * Like {@link #loadAsync(Path, Executor, Executor)}, selecting the palette variant to resolve before resolving
+     * anything, so only that variant is turned into {@link BlockData}.
+     *
+     * @param paletteSelector maps the number of palette variants to the index of the one to select, e.g.
+     *                        {@code count -> random.nextInt(count)}; {@code null} keeps the default
+     */
+    public static CompletableFuture<Structure> loadAsync(Path path, Executor executor, Executor mainThread, IntUnaryOperator paletteSelector)
+    {
+        CompletableFuture<Structure> result = new CompletableFuture<>();
+
+        FutureTask<Structure> readTask = new FutureTask<Structure>(() ->
+        {
+            Structure structure = new Structure();
+            structure.readFromFile(path);
+            if (paletteSelector != null)
+                structure.selectPalette(paletteSelector.applyAsInt(structure.getPaletteCount()));
+            return structure;
+        })
         {
-            Vector position = blockEntry.getKey();
-            BlockData data = blockEntry.getValue();
+            @Override
+            protected void done()
+            {
+                if (isCancelled())
+                    return;
 
-            base.clone().add(position).getBlock().setBlockData(data);
-        }
+                try
+                {
+                    Structure structure = get();
+                    mainThread.execute(() ->
+                    {
+                        if (result.isDone())
+                            return;
+
+                        try
+                        {
+                            structure.resolvePalette();
+                            result.complete(structure);
+                        }
+                        catch (Throwable t)
+                        {
+                            result.completeExceptionally(t);
+                        }
+                    });
+                }
+                catch (ExecutionException e)
+                {
+                    result.completeExceptionally(e.getCause());
+                }
+                catch (Throwable t)
+                {
+                    result.completeExceptionally(t);
+                }
+            }
+        };
 
-        for (EntityInfo entityInfo : entities)
+        result.whenComplete((structure, throwable) ->
         {
-            String entityID = entityInfo.getNBT().getString("id");
-            EntityType entityType = EntityType.valueOf(entityID.replace("minecraft:", "").toUpperCase());
+            if (result.isCancelled())
+                readTask.cancel(true);
+        });
 
-            base.getWorld().spawnEntity(base.clone().add(entityInfo.getBlockPosition()), entityType);
+        try
+        {
+            executor.execute(readTask);
+        }
+        catch (RejectedExecutionException e)
+        {
+            result.completeExceptionally(e);
         }
+
+        return result;
     }
 
     public void populateData(CompoundTag data)
+    {
+        readData(data);
+        resolvePalette();
+    }
+
+    /**
+     * Decodes the size, blocks and entities of an upgraded structure tree. This does not touch Bukkit, so it is
+     * safe to call off the server thread; {@link #resolvePalette()} must be called before the structure is placed.
+     */
+    public void readData(CompoundTag data)
     {
         ListTag sizeTag = data.getListTag("size");
         this.dimensions = new int[]{sizeTag.getInt(0), sizeTag.getInt(1), sizeTag.getInt(2)};
+        this.origin = new int[3];
+        this.blocks = new BlockStorage(dimensions[0], dimensions[1], dimensions[2]);
+        this.blockEntities = new BlockEntityTable();
+        this.entities = Lists.newArrayList();
 
         ListTag blockTags = data.getListTag("blocks");
-        ListTag paletteTags;
 
-        if (data.containsKey("palette"))
-        {
-            paletteTags = data.getListTag("palette");
+        setPaletteVariants(data.containsKey("palette") ? data.getListTag("palette") : null, data.containsKey("palettes") ? data.getListTag("palettes") : null);
+
+        populateBlockStates(blockTags);
+
+        ListTag entities = data.getListTag("entities");
+        populateEntities(entities);
+    }
 
-            populateBlockStates(paletteTags, blockTags);
+    /**
+     * Resolves the selected palette variant read by {@link #readData(CompoundTag)} to {@link BlockData}. Other
+     * variants are only resolved once they are selected or viewed.
+     */
+    public void resolvePalette()
+    {
+        if (resolvedVariants.length == 0)
+            throw new IllegalStateException("No structure data has been read");
+
+        this.palette = resolveVariant(selectedPalette);
+    }
+
+    public boolean isResolved()
+    {
+        return palette != null;
+    }
+
+    /**
+     * @return the number of palette variants; files with a {@code palettes} list, such as shipwrecks, have several
+     * variants of the same blocks
+     */
+    public int getPaletteCount()
+    {
+        return resolvedVariants.length;
+    }
+
+    /**
+     * @return the index of the selected palette variant, by default the last one
+     */
+    public int getSelectedPalette()
+    {
+        return selectedPalette;
+    }
+
+    /**
+     * Selects the palette variant used by {@link #view()}, {@link #place(Location)} and {@link #save(Path)}. If the
+     * structure is resolved, the variant is resolved now unless it has been before, which must happen on the server
+     * thread; otherwise it is resolved by {@link #resolvePalette()}. Variants are kept, so switching back and forth
+     * does not read the file again.
+     */
+    public void selectPalette(int index)
+    {
+        if (index < 0 || index >= getPaletteCount())
+            throw new IndexOutOfBoundsException("Palette " + index + " of " + getPaletteCount());
+
+        this.selectedPalette = index;
+        if (!paletteVariants.isEmpty())
+            this.paletteTags = paletteVariants.get(index);
+
+        if (palette != null)
+            this.palette = resolveVariant(index);
+    }
+
+    /**
+     * Selects a random palette variant, like vanilla does for structures with several palettes. Pass a seeded
+     * {@link Random} to get the same variant every time.
+     *
+     * @return the selected index
+     */
+    public int selectPalette(Random random)
+    {
+        int index = random.nextInt(getPaletteCount());
+        selectPalette(index);
+        return index;
+    }
+
+    private void setPaletteVariants(ListTag palette, ListTag palettes)
+    {
+        List<ListTag> variants = Lists.newArrayList();
+        if (palette != null)
+        {
+            variants.add(palette);
         }
-        else
+        else if (palettes != null)
         {
-            paletteTags = data.getListTag("palettes");
-
-            for (int i = 0; i < paletteTags.getValue().size(); i++)
+            for (int i = 0; i < palettes.getValue().size(); i++)
             {
-                populateBlockStates(paletteTags.getListTag(i), blockTags);
+                variants.add(palettes.getListTag(i));
             }
         }
 
-        ListTag entities = data.getListTag("entities");
-        populateEntities(entities);
+        if (variants.isEmpty())
+            throw new IllegalArgumentException("Structure has no palette");
+
+        this.paletteVariants = variants;
+        this.resolvedVariants = new BlockPalette[variants.size()];
+        this.transform = BlockTransform.IDENTITY;
+        this.palette = null;
+
+        //the last variant used to win, so it stays the default
+        this.selectedPalette = variants.size() - 1;
+        this.paletteTags = variants.get(selectedPalette);
     }
 
-    private void populateBlockStates(ListTag paletteTags, ListTag blockTags)
+    /**
+     * @return the smallest number of states of any variant, which every block's state has to be below
+     */
+    private int getMinPaletteSize()
     {
+        int size = Integer.MAX_VALUE;
+        for (ListTag variant : paletteVariants)
+        {
+            size = Math.min(size, variant.getValue().size());
+        }
+
+        return size;
+    }
+
+    private BlockPalette resolveVariant(int index)
+    {
+        BlockPalette resolved = resolvedVariants[index];
+        if (resolved == null)
+        {
+            resolved = dataExtractor.resolvePalette(paletteVariants.get(index));
+
+            //variants resolved after a rotation or mirror get the same transform as the blocks
+            if (!transform.isIdentity())
+                resolved = transformPalette(resolved, transform);
+
+            resolvedVariants[index] = resolved;
+        }
+
+        return resolved;
+    }
+
+    /**
+     * @return a new palette with every entry transformed under the same id
+     */
+    private static BlockPalette transformPalette(BlockPalette palette, BlockTransform transform)
+    {
+        BlockPalette transformed = new BlockPalette();
+        for (int id = 1; id < palette.size(); id++)
+        {
+            transformed.add(transform.transform(palette.get(id)));
+        }
+
+        return transformed;
+    }
+
+    private void populateBlockStates(ListTag blockTags)
+    {
+        int paletteSize = getMinPaletteSize();
+
         for (int i = 0; i < blockTags.getValue().size(); i++)
         {
             CompoundTag blockTag = (CompoundTag) blockTags.getIfExists(i);
             ListTag positionTags = blockTag.getListTag("pos");
-            CompoundTag stateTag = (CompoundTag) paletteTags.getIfExists(blockTag.getInt("state"));
+            int state = blockTag.getInt("state");
+
+            if (state < 0 || state >= paletteSize)
+                throw new IllegalArgumentException("Block " + i + " references unknown palette state " + state);
 
-            Vector position = new Vector(positionTags.getInt(0), positionTags.getInt(1), positionTags.getInt(2));
-            NBTDataExtractor.BlockInfo blockInfo = dataExtractor.getBlockInfo(stateTag);
+            this.blocks.set(positionTags.getInt(0), positionTags.getInt(1), positionTags.getInt(2), state + 1);
 
-            this.blockMap.put(position, blockInfo.getData());
+            if (blockTag.containsKey("nbt"))
+                this.blockEntities.put(this.blocks.getIndex(positionTags.getInt(0), positionTags.getInt(1), positionTags.getInt(2)), (CompoundTag) blockTag.getValue().get("nbt"));
         }
+
+        this.blockEntities.compact();
     }
 
     private void populateEntities(ListTag entities)
@@ -148,12 +462,8 @@ public class Structure
 
     public void loadFromFile(File file) throws IOException
     {
-        FileInputStream fileInputStream = new FileInputStream(file);
-
-        NBTInputStream inputStream = new NBTInputStream(fileInputStream, true);
-        CompoundTag data = (CompoundTag) inputStream.readNamedTag().getTag();
-        data = NBTUpdater.updateData(data);
-        populateData(data);
+        readFromFile(file.toPath());
+        resolvePalette();
 
 
 //        NBTTagCompound data = CompressedStreamTools.readCompressed(fileInputStream);
@@ -164,66 +474,271 @@ public class Structure
         //populateData(NBTUpdater.updateData(CompressedStreamTools.readCompressed(new FileInputStream(file))));
     }
 
-    //TODO jeez this is bad, can't use iterator, produces CME exception, temp fix
-    public void rotate(int angle)
+    /**
+     * Reads, upgrades and decodes a structure file without resolving its palette. Blocks are streamed straight into
+     * the block storage; only the palette and entities go through the DataFixer, and only if the file is not
+     * current. With an {@link NBTUpdater#getUpgradeCache() upgrade cache} the upgraded part is reused across loads.
+     *
+     * @see #readData(CompoundTag)
+     */
+    public void readFromFile(Path path) throws IOException
     {
-        Map<Vector, BlockData> blockMapCopy = Maps.newHashMap();
+        UpgradeCache upgradeCache = NBTUpdater.getUpgradeCache();
+        MessageDigest digest = upgradeCache != null ? createDigest() : null;
 
-        for (Map.Entry<Vector, BlockData> blockEntry : blockMap.entrySet())
+        StructureReader reader = new StructureReader();
+        try (InputStream in = digest != null ? new DigestInputStream(Files.newInputStream(path), digest) : Files.newInputStream(path); NBTInputStream inputStream = new NBTInputStream(in, true))
         {
-            Vector vector = blockEntry.getKey();
-            BlockData blockData = blockEntry.getValue();
+            inputStream.accept(reader);
 
-            if (blockData instanceof Directional)
+            //the hash has to cover the whole file, including whatever the decoder did not need
+            if (digest != null)
+                ByteStreams.exhaust(in);
+        }
+
+        if (NBTUpdater.needsUpdate(reader.getDataVersion()))
+        {
+            byte[] contentHash = digest != null ? digest.digest() : null;
+            CompoundTag upgraded = contentHash != null ? upgradeCache.get(contentHash, reader.getDataVersion()) : null;
+
+            if (upgraded == null)
             {
-                Directional directional = (Directional) blockData;
-                Vector directionVector = VectorUtil.toVector(directional.getFacing());
-                directionVector = VectorUtil.rotateVector(directionVector, angle);
-                ((Directional) blockData).setFacing(VectorUtil.fromVector(directionVector));
+                upgraded = NBTUpdater.updateData(reader.createUpgradeTree());
+                if (contentHash != null)
+                    upgradeCache.put(contentHash, reader.getDataVersion(), upgraded);
             }
 
-            Vector offset = VectorUtil.rotateVector(vector, angle);
+            reader.applyUpgradeTree(upgraded);
+        }
+
+        int[] size = reader.getSize();
+        if (size == null)
+            throw new IllegalArgumentException("Structure has no size");
 
-            blockMapCopy.put(offset, blockData);
+        this.dimensions = size;
+        this.origin = new int[3];
+        this.blocks = reader.getBlocks();
+        this.blockEntities = reader.getBlockEntities();
+        this.entities = Lists.newArrayList();
+        setPaletteVariants(reader.getPalette(), reader.getPalettes());
+
+        if (reader.getMaxState() >= getMinPaletteSize())
+            throw new IllegalArgumentException("Blocks reference unknown palette state " + reader.getMaxState());
+
+        populateEntities(reader.getEntities());
+    }
+
+    /**
+     * Saves the structure as it is now, e.g. after {@link #rotate(int)}, in the vanilla structure format, so that
+     * rotated variants can be created once and loaded as they are. The file is replaced atomically.
+     *
+     * <p>The saved blocks start at the structure's first position, so a saved rotation is placed at
+     * {@code base + }{@link #getOrigin()} to line up with placing the rotated structure at {@code base}.</p>
+     */
+    public void save(Path path) throws IOException
+    {
+        NBTFiles.write(path, writeData());
+    }
+
+    /**
+     * Creates the tree {@link #save(Path)} writes. Block tags are only created while it is being written, so the
+     * tree should be written once and not kept around.
+     */
+    public CompoundTag writeData()
+    {
+        if (blocks == null)
+            throw new IllegalStateException("No structure data has been read");
+
+        String[] states = new String[isResolved() ? palette.size() : paletteTags.getValue().size() + 1];
+        for (int id = 1; id < states.length; id++)
+        {
+            states[id] = isResolved() ? palette.get(id).getAsString() : StructureWriter.toStateString((CompoundTag) paletteTags.getIfExists(id - 1));
         }
 
-        this.blockMap = blockMapCopy;
+        return new StructureWriter(blocks, blockEntities, states).createTag(origin, entities);
+    }
 
-//        Iterator<Vector> blockEntryIterator = blockMap.keySet().iterator();
-//        while (blockEntryIterator.hasNext())
-//        {
-//            Vector position = blockEntryIterator.next();
-//            BlockData blockData = blockMap.get(position);
-//
-//            if (blockData instanceof Directional)
-//            {
-//                Directional directional = (Directional) blockData;
-//                BlockFace facing = directional.getFacing();
-//
-//                Vector directionVector = VectorUtil.toVector(facing);
-//                directionVector = VectorUtil.rotateVector(directionVector, angle);
-//                ((Directional) blockData).setFacing(VectorUtil.fromVector(directionVector));
-//            }
-//
-//            Vector rotated = VectorUtil.rotateVector(position, angle);
-//
-//            this.blockMap.put(rotated, blockData);
-//
-//            blockEntryIterator.remove();
-//        }
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rotates the structure itself, e.g. to {@link #save(Path)} the result. To place a structure in another
+     * orientation, use a {@link #view()}, which does not copy any blocks.
+     *
+     * @param angle a multiple of 90 degrees, clockwise
+     */
+    public void rotate(int angle)
+    {
+        apply(view().rotate(angle));
     }
 
-    private class EntityInfo
+    /**
+     * Mirrors the structure itself.
+     *
+     * @see #rotate(int)
+     */
+    public void mirror(Mirror mirror)
     {
+        apply(view().mirror(mirror));
+    }
+
+    /**
+     * Copies a transformed view of this structure back into it. Palettes are replaced by transformed copies rather
+     * than changed, so views created earlier keep their state.
+     */
+    private void apply(StructureView view)
+    {
+        if (view.getTransform().isIdentity())
+            return;
+
+        int[] min = view.getMin();
+        int[] max = view.getMax();
+        BlockStorage transformed = new BlockStorage(max[0] - min[0] + 1, max[1] - min[1] + 1, max[2] - min[2] + 1);
+
+        for (int index = 0; index < blocks.getVolume(); index++)
+        {
+            int id = blocks.get(index);
+            if (id != BlockStorage.EMPTY)
+                transformed.set(view.getX(index) - min[0], view.getY(index) - min[1], view.getZ(index) - min[2], id);
+        }
+
+        //the view already transformed the selected palette, the other resolved variants are transformed the same way
+        BlockData[] viewPalette = view.getPalette();
+        BlockPalette transformedPalette = new BlockPalette();
+        for (int id = 1; id < viewPalette.length; id++)
+        {
+            transformedPalette.add(viewPalette[id]);
+        }
+
+        BlockPalette[] transformedVariants = new BlockPalette[resolvedVariants.length];
+        for (int index = 0; index < resolvedVariants.length; index++)
+        {
+            if (index == selectedPalette)
+                transformedVariants[index] = transformedPalette;
+            else if (resolvedVariants[index] != null)
+                transformedVariants[index] = transformPalette(resolvedVariants[index], view.getTransform());
+        }
+
+        this.palette = transformedPalette;
+        this.resolvedVariants = transformedVariants;
+        this.transform = transform.then(view.getTransform());
+
+        this.blockEntities = blockEntities.remap(index -> transformed.getIndex(view.getX(index) - min[0], view.getY(index) - min[1], view.getZ(index) - min[2]));
+        this.blocks = transformed;
+        this.origin = min;
+        this.dimensions = new int[]{transformed.getSizeX(), transformed.getSizeY(), transformed.getSizeZ()};
+        this.entities = Lists.newArrayList(view.getEntities());
+    }
+
+    public int[] getDimensions()
+    {
+        return dimensions.clone();
+    }
+
+    /**
+     * @return the offset of the storage's first position from the placement anchor
+     */
+    public int[] getOrigin()
+    {
+        return origin.clone();
+    }
+
+    public BlockStorage getBlocks()
+    {
+        return blocks;
+    }
+
+    /**
+     * @return the data of the blocks' block entities, keyed by {@link #getBlocks()} index
+     */
+    public BlockEntityTable getBlockEntities()
+    {
+        return blockEntities;
+    }
+
+    public BlockPalette getPalette()
+    {
+        return palette;
+    }
+
+    public List<EntityInfo> getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * @return a rough estimate of the heap held by this structure, used to bound caches
+     */
+    public long getEstimatedRetainedBytes()
+    {
+        long bytes = 64L;
+
+        if (blocks != null)
+            bytes += blocks.getRetainedBytes();
+        bytes += blockEntities.getRetainedBytes();
+        for (ListTag variant : paletteVariants)
+        {
+            bytes += 256L * variant.getValue().size();
+        }
+        for (BlockPalette variant : resolvedVariants)
+        {
+            if (variant != null)
+                bytes += 64L * variant.size();
+        }
+
+        return bytes + 1024L * entities.size();
+    }
+
+    public static class EntityInfo
+    {
+        private static final Map<String, EntityType> TYPES_BY_KEY = Maps.newHashMap();
+
+        static
+        {
+            for (EntityType type : EntityType.values())
+            {
+                if (type != EntityType.UNKNOWN)
+                    TYPES_BY_KEY.put(type.getKey().toString(), type);
+            }
+        }
+
         private Vector position;
         private Vector blockPosition;
         private CompoundTag nbt;
+        private EntityType type;
 
         public EntityInfo(Vector position, Vector blockPosition, CompoundTag nbt)
+        {
+            this(position, blockPosition, nbt, resolveType(nbt));
+        }
+
+        /**
+         * @param type the type stored in {@code nbt}, for copies of an entity whose type has already been resolved
+         */
+        public EntityInfo(Vector position, Vector blockPosition, CompoundTag nbt, EntityType type)
         {
             this.position = position;
             this.blockPosition = blockPosition;
             this.nbt = nbt;
+            this.type = type;
+        }
+
+        private static EntityType resolveType(CompoundTag nbt)
+        {
+            if (!nbt.containsKey("id"))
+                return null;
+
+            String id = nbt.getString("id");
+            return TYPES_BY_KEY.get(id.indexOf(':') < 0 ? NamespacedKey.MINECRAFT + ":" + id : id);
         }
 
         public Vector getPosition()
@@ -240,33 +755,55 @@ public class Structure
         {
             return nbt;
         }
+
+        /**
+         * @return the type named by the entity's {@code id}, or {@code null} if Bukkit does not know it
+         */
+        public EntityType getType()
+        {
+            return type;
+        }
     }
 
     private class NBTDataExtractor
     {
+        /**
+         * Resolves every palette entry exactly once. Palette id {@code state + 1} holds the prototype
+         * for file state {@code state}; blocks share these prototypes, so anything that needs to modify
+         * one must clone it first.
+         */
+        public BlockPalette resolvePalette(ListTag paletteTags)
+        {
+            BlockPalette resolved = new BlockPalette();
+
+            for (int state = 0; state < paletteTags.getValue().size(); state++)
+            {
+                resolved.add(getBlockInfo((CompoundTag) paletteTags.getIfExists(state)).getData());
+            }
+
+            return resolved;
+        }
+
         public BlockInfo getBlockInfo(CompoundTag data)
         {
             BlockInfo blockInfo;
 
-            if (!data.containsKey("Name"))
+            Material material = data.containsKey("Name") ? Material.matchMaterial(data.getString("Name")) : null;
+            if (material == null)
             {
                 blockInfo = new BlockInfo(Material.AIR, Material.AIR.createBlockData());
             }
-            else
+            else if (data.containsKey("Properties"))
             {
-                String materialName = data.getString("Name").replace("minecraft:", "").toUpperCase();
-                Material material = Material.getMaterial(materialName);
+                CompoundTag propertyTag = (CompoundTag) data.getValue().get("Properties");
 
-                blockInfo = new BlockInfo(material, material.createBlockData());
-
-                if (data.containsKey("Properties"))
-                {
-                    CompoundTag propertyTag = (CompoundTag) data.getValue().get("Properties");
+                String blockDataString = toBlockData(propertyTag.getValue());
 
-                    String blockDataString = toBlockData(propertyTag.getValue());
-
-                    blockInfo = new BlockInfo(material, material.createBlockData(blockDataString));
-                }
+                blockInfo = new BlockInfo(material, material.createBlockData(blockDataString));
+            }
+            else
+            {
+                blockInfo = new BlockInfo(material, material.createBlockData());
             }
 
             return blockInfo;
@@ -0,0 +1,244 @@
+package org.jared.structures;
+
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Keeps loaded structure templates in memory, keyed by file path and last modification time, and hands out
+ * {@link StructureView}s of them. The least recently used templates are evicted once the estimated retained size of
+ * all templates exceeds the configured limit.
+ *
+ * <p>Templates are never exposed directly, and views only give read access, so they cannot be changed after
+ * being cached. Methods returning futures complete on the server thread, like {@link Structure#loadAsync(Path, Executor)}.</p>
+ */
+public class StructureCache
+{
+    private final long maxBytes;
+
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<Path, Load> loading = Maps.newHashMap();
+    private long retainedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StructureCache(long maxBytes)
+    {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a view of the cached template for the given file, loading it on the calling thread if it is missing
+     * or the file changed since it was cached.
+     */
+    public StructureView get(Path path) throws IOException
+    {
+        Path key = path.toAbsolutePath().normalize();
+        long lastModified = Files.getLastModifiedTime(key).toMillis();
+
+        StructureView cached = getIfPresent(key, lastModified);
+        if (cached != null)
+            return cached;
+
+        synchronized (this)
+        {
+            misses++;
+        }
+
+        Structure structure = new Structure();
+        structure.readFromFile(key);
+        structure.resolvePalette();
+
+        return put(key, lastModified, structure);
+    }
+
+    /**
+     * Returns a view of the cached template for the given file, loading it with
+     * {@link Structure#loadAsync(Path, Executor)} if it is missing or the file changed since it was cached.
+     * Concurrent requests for the same file share one load, but each gets its own future: cancelling it only
+     * affects that caller, and the load itself is cancelled once every caller waiting for it has cancelled.
+     */
+    public CompletableFuture<StructureView> getAsync(Path path, Executor executor)
+    {
+        Path key = path.toAbsolutePath().normalize();
+        long lastModified;
+
+        try
+        {
+            lastModified = Files.getLastModifiedTime(key).toMillis();
+        }
+        catch (IOException e)
+        {
+            CompletableFuture<StructureView> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        synchronized (this)
+        {
+            StructureView cached = getIfPresent(key, lastModified);
+            if (cached != null)
+                return CompletableFuture.completedFuture(cached);
+
+            //joining a load in flight is not a miss, the load already counted it
+            Load load = loading.get(key);
+            if (load == null)
+            {
+                misses++;
+                CompletableFuture<Structure> structure = Structure.loadAsync(key, executor);
+                load = new Load(structure, structure.thenApply(loaded -> put(key, lastModified, loaded)));
+                loading.put(key, load);
+
+                Load started = load;
+                load.view.whenComplete((view, throwable) -> removeLoading(key, started));
+            }
+
+            Load joined = load;
+            CompletableFuture<StructureView> future = load.view.thenApply(Function.identity());
+            load.callers++;
+            future.whenComplete((view, throwable) ->
+            {
+                if (future.isCancelled())
+                    leave(key, joined);
+            });
+
+            return future;
+        }
+    }
+
+    public synchronized void invalidate(Path path)
+    {
+        Entry entry = entries.remove(path.toAbsolutePath().normalize());
+        if (entry != null)
+            retainedBytes -= entry.bytes;
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        retainedBytes = 0;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public synchronized long getRetainedBytes()
+    {
+        return retainedBytes;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    private synchronized StructureView getIfPresent(Path key, long lastModified)
+    {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.lastModified == lastModified)
+        {
+            hits++;
+            return entry.view;
+        }
+
+        return null;
+    }
+
+    private synchronized StructureView put(Path key, long lastModified, Structure structure)
+    {
+        Entry entry = new Entry(lastModified, structure.view(), structure.getEstimatedRetainedBytes());
+
+        Entry previous = entries.put(key, entry);
+        if (previous != null)
+            retainedBytes -= previous.bytes;
+        retainedBytes += entry.bytes;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (retainedBytes > maxBytes && iterator.hasNext())
+        {
+            Entry eldest = iterator.next();
+            if (eldest == entry)
+                break;
+
+            iterator.remove();
+            retainedBytes -= eldest.bytes;
+            evictions++;
+        }
+
+        return entry.view;
+    }
+
+    private synchronized void removeLoading(Path key, Load load)
+    {
+        loading.remove(key, load);
+    }
+
+    /**
+     * Called when a caller cancelled its future, cancelling the load once nobody is waiting for it.
+     */
+    private synchronized void leave(Path key, Load load)
+    {
+        if (--load.callers == 0 && !load.view.isDone())
+        {
+            loading.remove(key, load);
+            load.structure.cancel(true);
+        }
+    }
+
+    private static class Load
+    {
+        private final CompletableFuture<Structure> structure;
+        private final CompletableFuture<StructureView> view;
+        private int callers;
+
+        private Load(CompletableFuture<Structure> structure, CompletableFuture<StructureView> view)
+        {
+            this.structure = structure;
+            this.view = view;
+        }
+    }
+
+    private static class Entry
+    {
+        private final long lastModified;
+        private final StructureView view;
+        private final long bytes;
+
+        private Entry(long lastModified, StructureView view, long bytes)
+        {
+            this.lastModified = lastModified;
+            this.view = view;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.jared.structures;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
+import org.jared.structures.nbt.*;
+import org.jared.structures.storage.BlockEntityTable;
+import org.jared.structures.storage.BlockStorage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a structure's block storage straight from an NBT stream. Only the palette and entities are decoded into
+ * tags; the (usually huge) block list is read position by position without creating any tags, and block entity data
+ * is copied into a {@link BlockEntityTable} undecoded.
+ *
+ * <p>Keys of the root compound can come in any order, so blocks read before {@code size} are buffered in primitive
+ * arrays until the storage can be allocated.</p>
+ */
+class StructureReader implements NBTVisitor
+{
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private int depth;
+    private String rootKey;
+    private String blockKey;
+
+    private int dataVersion;
+    private int[] size;
+    private int sizeIndex;
+    private ListTag palette;
+    private ListTag palettes;
+    private ListTag entities;
+
+    private BlockStorage blocks;
+    private long[] pendingPositions = new long[0];
+    private int[] pendingStates = new int[0];
+    private int pendingCount;
+    private int blockCount;
+    private int maxState = -1;
+
+    private long[] blockEntityPositions = new long[0];
+    private List<byte[]> blockEntityPayloads = Lists.newArrayList();
+    private BlockEntityTable blockEntities;
+
+    private int[] position = new int[3];
+    private int positionIndex;
+    private int state;
+    private byte[] payload;
+
+    @Override
+    public Action key(String name, int type)
+    {
+        if (depth == 0)
+            return type == NBTConstants.TYPE_COMPOUND ? Action.VISIT : Action.SKIP;
+
+        if (depth == 1)
+        {
+            rootKey = name;
+            switch (name)
+            {
+                case "DataVersion":
+                case "size":
+                case "blocks":
+                    return Action.VISIT;
+                case "palette":
+                case "palettes":
+                case "entities":
+                    return type == NBTConstants.TYPE_LIST ? Action.READ_TAG : Action.SKIP;
+                default:
+                    return Action.SKIP;
+            }
+        }
+
+        if (depth == 3 && "blocks".equals(rootKey))
+        {
+            blockKey = name;
+            if ("nbt".equals(name))
+                return type == NBTConstants.TYPE_COMPOUND ? Action.READ_RAW : Action.SKIP;
+
+            return "pos".equals(name) || "state".equals(name) ? Action.VISIT : Action.SKIP;
+        }
+
+        return Action.SKIP;
+    }
+
+    @Override
+    public void startCompound()
+    {
+        depth++;
+
+        if (depth == 3 && "blocks".equals(rootKey))
+        {
+            positionIndex = 0;
+            state = -1;
+            payload = null;
+        }
+    }
+
+    @Override
+    public void endCompound()
+    {
+        if (depth == 3 && "blocks".equals(rootKey))
+            addBlock();
+
+        depth--;
+    }
+
+    @Override
+    public void startList(int childType, int length)
+    {
+        depth++;
+
+        if (depth == 2 && "size".equals(rootKey))
+        {
+            size = new int[3];
+            sizeIndex = 0;
+        }
+    }
+
+    @Override
+    public void endList()
+    {
+        if (depth == 2 && "size".equals(rootKey))
+            allocate();
+
+        depth--;
+    }
+
+    @Override
+    public void intValue(int value)
+    {
+        if (depth == 1 && "DataVersion".equals(rootKey))
+        {
+            dataVersion = value;
+        }
+        else if (depth == 2 && "size".equals(rootKey))
+        {
+            if (sizeIndex < 3)
+                size[sizeIndex++] = value;
+        }
+        else if (depth == 4 && "pos".equals(blockKey))
+        {
+            if (positionIndex < 3)
+                position[positionIndex++] = value;
+        }
+        else if (depth == 3 && "state".equals(blockKey))
+        {
+            state = value;
+        }
+    }
+
+    @Override
+    public void tagValue(Tag tag)
+    {
+        switch (rootKey)
+        {
+            case "palette":
+                palette = (ListTag) tag;
+                break;
+            case "palettes":
+                palettes = (ListTag) tag;
+                break;
+            case "entities":
+                entities = (ListTag) tag;
+                break;
+        }
+    }
+
+    @Override
+    public void rawValue(int type, byte[] payload)
+    {
+        this.payload = payload;
+    }
+
+    public int getDataVersion()
+    {
+        return dataVersion;
+    }
+
+    public int[] getSize()
+    {
+        return size;
+    }
+
+    public BlockStorage getBlocks()
+    {
+        if (blocks == null)
+            throw new IllegalArgumentException("Structure has no size");
+
+        return blocks;
+    }
+
+    /**
+     * @return the highest palette state referenced by any block, or -1 if there are no blocks
+     */
+    public int getMaxState()
+    {
+        return maxState;
+    }
+
+    /**
+     * @return the block entity data of the blocks, keyed by storage index
+     */
+    public BlockEntityTable getBlockEntities()
+    {
+        if (blockEntities == null)
+        {
+            BlockStorage storage = getBlocks();
+            blockEntities = new BlockEntityTable();
+
+            for (int i = 0; i < blockEntityPayloads.size(); i++)
+            {
+                long packed = blockEntityPositions[i];
+                blockEntities.put(storage.getIndex(unpackX(packed), unpackY(packed), unpackZ(packed)), blockEntityPayloads.get(i));
+            }
+
+            blockEntities.compact();
+            blockEntityPositions = null;
+            blockEntityPayloads = null;
+        }
+
+        return blockEntities;
+    }
+
+    public ListTag getPalette()
+    {
+        return palette;
+    }
+
+    public ListTag getPalettes()
+    {
+        return palettes;
+    }
+
+    public ListTag getEntities()
+    {
+        return entities != null ? entities : new ListTag(CompoundTag.class, Collections.<Tag>emptyList());
+    }
+
+    /**
+     * Builds the part of the structure the DataFixer can change: the palette(s), entities and block entities, but
+     * not the other blocks, whose positions and states are never touched by an upgrade.
+     */
+    public CompoundTag createUpgradeTree()
+    {
+        Map<String, Tag> value = Maps.newHashMap();
+        value.put("DataVersion", new IntTag(dataVersion));
+        if (palette != null)
+            value.put("palette", palette);
+        if (palettes != null)
+            value.put("palettes", palettes);
+        value.put("entities", getEntities());
+
+        BlockEntityTable blockEntities = blocks != null ? getBlockEntities() : null;
+        if (blockEntities != null && !blockEntities.isEmpty())
+        {
+            List<Tag> blockTags = Lists.newArrayListWithCapacity(blockEntities.size());
+            for (int entry = 0; entry < blockEntities.size(); entry++)
+            {
+                int index = blockEntities.getIndex(entry);
+
+                Map<String, Tag> block = Maps.newHashMapWithExpectedSize(3);
+                block.put("pos", new IntListTag(new int[]{blocks.getX(index), blocks.getY(index), blocks.getZ(index)}));
+                block.put("state", new IntTag(blocks.get(index) - 1));
+                block.put("nbt", blockEntities.getTag(entry));
+                blockTags.add(new CompoundTag(block));
+            }
+            value.put("blocks", new ListTag(CompoundTag.class, blockTags));
+        }
+
+        return new CompoundTag(value);
+    }
+
+    /**
+     * Takes the palette(s), entities and block entities back from an upgraded {@link #createUpgradeTree()}.
+     */
+    public void applyUpgradeTree(CompoundTag upgraded)
+    {
+        if (palette != null)
+            palette = upgraded.getListTag("palette");
+        if (palettes != null)
+            palettes = upgraded.getListTag("palettes");
+        entities = upgraded.getListTag("entities");
+
+        //the DataFixer keeps the order of the list, so entries still line up with the table
+        BlockEntityTable blockEntities = blocks != null ? getBlockEntities() : null;
+        if (blockEntities != null && !blockEntities.isEmpty() && upgraded.containsKey("blocks"))
+        {
+            ListTag blockTags = upgraded.getListTag("blocks");
+            for (int entry = 0; entry < blockEntities.size() && entry < blockTags.getValue().size(); entry++)
+            {
+                CompoundTag block = (CompoundTag) blockTags.getIfExists(entry);
+                if (block.containsKey("nbt"))
+                    blockEntities.setTag(entry, (CompoundTag) block.getValue().get("nbt"));
+            }
+        }
+    }
+
+    private void addBlock()
+    {
+        if (positionIndex < 3 || state < 0)
+            throw new IllegalArgumentException("Block " + blockCount + " has no position or state");
+
+        maxState = Math.max(maxState, state);
+        blockCount++;
+
+        if (payload != null)
+        {
+            int count = blockEntityPayloads.size();
+            if (count == blockEntityPositions.length)
+                blockEntityPositions = Arrays.copyOf(blockEntityPositions, Math.max(16, count * 2));
+
+            blockEntityPositions[count] = pack(position[0], position[1], position[2]);
+            blockEntityPayloads.add(payload);
+        }
+
+        if (blocks != null)
+        {
+            blocks.set(position[0], position[1], position[2], state + 1);
+            return;
+        }
+
+        if (pendingCount == pendingStates.length)
+        {
+            int capacity = Math.max(1024, pendingCount * 2);
+            pendingPositions = Arrays.copyOf(pendingPositions, capacity);
+            pendingStates = Arrays.copyOf(pendingStates, capacity);
+        }
+
+        pendingPositions[pendingCount] = pack(position[0], position[1], position[2]);
+        pendingStates[pendingCount] = state;
+        pendingCount++;
+    }
+
+    private void allocate()
+    {
+        blocks = new BlockStorage(size[0], size[1], size[2]);
+
+        for (int i = 0; i < pendingCount; i++)
+        {
+            long packed = pendingPositions[i];
+            blocks.set(unpackX(packed), unpackY(packed), unpackZ(packed), pendingStates[i] + 1);
+        }
+
+        pendingPositions = null;
+        pendingStates = null;
+        pendingCount = 0;
+    }
+
+    private static long pack(int x, int y, int z)
+    {
+        return (x & COORDINATE_MASK) << (2 * COORDINATE_BITS) | (y & COORDINATE_MASK) << COORDINATE_BITS | (z & COORDINATE_MASK);
+    }
+
+    private static int unpackX(long packed)
+    {
+        return (int) (packed >>> (2 * COORDINATE_BITS) & COORDINATE_MASK);
+    }
+
+    private static int unpackY(long packed)
+    {
+        return (int) (packed >>> COORDINATE_BITS & COORDINATE_MASK);
+    }
+
+    private static int unpackZ(long packed)
+    {
+        return (int) (packed & COORDINATE_MASK);
+    }
+}
@@ -4,10 +4,10 @@ import org.bukkit.Location;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.jared.structures.placement.PlacementOptions;
 import org.jared.structures.plugin.StructureMain;
 
 import java.io.File;
-import java.io.IOException;
 
 public class StructureTest implements Listener
 {
@@ -19,17 +19,18 @@ public class StructureTest implements Listener
 
     public void placeStructure(Location base)
     {
-        try
-        {
-            File file = new File(StructureMain.getInstance().getDataFolder() + "\\entitytest.nbt");
-            Structure structure = new Structure(file);
-            structure.rotate(90); //only hard angles are allowed (90, 180, 270, 360, 0)
+        StructureMain plugin = StructureMain.getInstance();
+        File file = new File(plugin.getDataFolder(), "entitytest.nbt");
 
-            structure.place(base);
-        }
-        catch (IOException e)
+        plugin.getStructureCache().getAsync(file.toPath(), plugin.getLoadExecutor()).whenComplete((structure, throwable) ->
         {
-            e.printStackTrace();
-        }
+            if (throwable != null)
+            {
+                throwable.printStackTrace();
+                return;
+            }
+
+            structure.rotate(90).place(base, plugin, new PlacementOptions()); //only hard angles are allowed (90, 180, 270, 360, 0)
+        });
     }
 }
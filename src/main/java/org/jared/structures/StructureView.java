@@ -0,0 +1,363 @@
+package org.jared.structures;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.bukkit.Location;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.Vector;
+import org.jared.structures.nbt.ByteTag;
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.FloatListTag;
+import org.jared.structures.nbt.ListTag;
+import org.jared.structures.nbt.Tag;
+import org.jared.structures.placement.PlacementOptions;
+import org.jared.structures.placement.PlacementTask;
+import org.jared.structures.storage.BlockEntityTable;
+import org.jared.structures.storage.BlockPalette;
+import org.jared.structures.storage.BlockStorage;
+import org.jared.structures.util.BlockTransform;
+import org.jared.structures.util.Mirror;
+import org.jared.structures.util.Rotation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of a {@link Structure} in one of its 8 orientations, moved by an offset. Views share the
+ * structure's block storage, which is only exposed through read-only accessors, and only hold a
+ * {@link BlockTransform}; positions are transformed as they are read, and
+ * the (small) palette and the entities are transformed once, on first use. One structure can therefore be placed in
+ * every orientation without copying any block data.
+ *
+ * <p>A view captures the structure as it was when the view was created; later changes to the structure do not
+ * affect it.</p>
+ */
+public final class StructureView
+{
+    private static final BlockFace[] FACING_2D = {BlockFace.SOUTH, BlockFace.WEST, BlockFace.NORTH, BlockFace.EAST};
+    private static final BlockFace[] FACING_3D = {BlockFace.DOWN, BlockFace.UP, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.WEST, BlockFace.EAST};
+
+    private final BlockStorage blocks;
+    private final BlockEntityTable blockEntities;
+    private final int[] origin;
+    private final BlockData[] basePalette;
+    private final List<Structure.EntityInfo> baseEntities;
+    private final BlockTransform transform;
+    private final int[] offset;
+
+    private final int[] min;
+    private final int[] max;
+    private volatile BlockData[] palette;
+    private volatile List<Structure.EntityInfo> entities;
+
+    StructureView(Structure structure, BlockPalette structurePalette)
+    {
+        BlockData[] basePalette = new BlockData[structurePalette.size()];
+        for (int id = 1; id < basePalette.length; id++)
+        {
+            basePalette[id] = structurePalette.get(id);
+        }
+
+        this.blocks = structure.getBlocks();
+        this.blockEntities = structure.getBlockEntities();
+        this.origin = structure.getOrigin();
+        this.basePalette = basePalette;
+        this.baseEntities = Collections.unmodifiableList(Lists.newArrayList(structure.getEntities()));
+        this.transform = BlockTransform.IDENTITY;
+        this.offset = new int[3];
+        this.min = new int[3];
+        this.max = new int[3];
+        computeBounds();
+    }
+
+    private StructureView(StructureView view, BlockTransform transform, int[] offset)
+    {
+        this.blocks = view.blocks;
+        this.blockEntities = view.blockEntities;
+        this.origin = view.origin;
+        this.basePalette = view.basePalette;
+        this.baseEntities = view.baseEntities;
+        this.transform = transform;
+        this.offset = offset;
+        this.min = new int[3];
+        this.max = new int[3];
+        computeBounds();
+
+        //the palette only depends on the transform, so views that are only moved can share it
+        if (transform == view.transform)
+            this.palette = view.palette;
+    }
+
+    /**
+     * Rotates the view around the placement anchor.
+     *
+     * @param angle a multiple of 90 degrees, clockwise
+     * @return a view of the same blocks rotated by the given angle
+     */
+    public StructureView rotate(int angle)
+    {
+        return transform(BlockTransform.of(Rotation.fromAngle(angle), Mirror.NONE));
+    }
+
+    /**
+     * Mirrors the view across a plane through the placement anchor.
+     */
+    public StructureView mirror(Mirror mirror)
+    {
+        return transform(BlockTransform.of(Rotation.NONE, mirror));
+    }
+
+    /**
+     * Applies {@code next} after this view's transform, around the placement anchor, moving the offset along.
+     */
+    public StructureView transform(BlockTransform next)
+    {
+        if (next.isIdentity())
+            return this;
+
+        int[] transformedOffset = {next.transformX(offset[0], offset[2]), offset[1], next.transformZ(offset[0], offset[2])};
+        return new StructureView(this, transform.then(next), transformedOffset);
+    }
+
+    /**
+     * @return a view of the same blocks moved by the given amount
+     */
+    public StructureView offset(int x, int y, int z)
+    {
+        if (x == 0 && y == 0 && z == 0)
+            return this;
+
+        return new StructureView(this, transform, new int[]{offset[0] + x, offset[1] + y, offset[2] + z});
+    }
+
+    public BlockTransform getTransform()
+    {
+        return transform;
+    }
+
+    /**
+     * @return the clockwise rotation of this view in degrees, applied after {@link #getMirror()}
+     */
+    public int getRotation()
+    {
+        return transform.getRotation().getAngle();
+    }
+
+    public Mirror getMirror()
+    {
+        return transform.getMirror();
+    }
+
+    public int[] getOffset()
+    {
+        return offset.clone();
+    }
+
+    public void place(Location base)
+    {
+        new PlacementTask(this, base, new PlacementOptions()).placeAll();
+    }
+
+    public PlacementTask place(Location base, Plugin plugin, PlacementOptions options)
+    {
+        return new PlacementTask(this, base, options).start(plugin);
+    }
+
+    /**
+     * @return the number of storage indices, including positions the structure leaves untouched
+     */
+    public int getVolume()
+    {
+        return blocks.getVolume();
+    }
+
+    /**
+     * @return the number of positions the structure sets
+     */
+    public int getBlockCount()
+    {
+        return blocks.getBlockCount();
+    }
+
+    /**
+     * @return the palette id of the block at the given storage index, or {@link BlockStorage#EMPTY} if the structure
+     * leaves the position untouched
+     */
+    public int getBlockId(int index)
+    {
+        return blocks.get(index);
+    }
+
+    public int getBlockEntityCount()
+    {
+        return blockEntities.size();
+    }
+
+    /**
+     * @return the storage index of the block entity entry, entries being in ascending index order
+     */
+    public int getBlockEntityIndex(int entry)
+    {
+        return blockEntities.getIndex(entry);
+    }
+
+    /**
+     * @return the stored data of the block entity entry, as read from the structure file
+     */
+    public CompoundTag getBlockEntityData(int entry)
+    {
+        return blockEntities.getTag(entry);
+    }
+
+    /**
+     * @return a copy of the transformed palette, indexed by {@link #getBlockId(int) block id}
+     */
+    public BlockData[] getPalette()
+    {
+        BlockData[] transformed = palette;
+        if (transformed == null)
+        {
+            transformed = new BlockData[basePalette.length];
+            for (int id = 1; id < transformed.length; id++)
+            {
+                transformed[id] = transform.transform(basePalette[id]);
+            }
+
+            palette = transformed;
+        }
+
+        return transformed.clone();
+    }
+
+    /**
+     * @return the entities with their positions relative to the placement anchor and their yaw transformed
+     */
+    public List<Structure.EntityInfo> getEntities()
+    {
+        List<Structure.EntityInfo> transformed = entities;
+        if (transformed == null)
+        {
+            if (transform.isIdentity() && offset[0] == 0 && offset[1] == 0 && offset[2] == 0)
+            {
+                transformed = baseEntities;
+            }
+            else
+            {
+                transformed = Lists.newArrayListWithCapacity(baseEntities.size());
+                for (Structure.EntityInfo entity : baseEntities)
+                {
+                    transformed.add(transformEntity(entity));
+                }
+                transformed = Collections.unmodifiableList(transformed);
+            }
+
+            entities = transformed;
+        }
+
+        return transformed;
+    }
+
+    private Structure.EntityInfo transformEntity(Structure.EntityInfo entity)
+    {
+        //block coordinates name a block's corner, so exact positions are transformed around the block's center
+        Vector position = entity.getPosition();
+        double x = transform.transformX(position.getX() - 0.5D, position.getZ() - 0.5D) + 0.5D + offset[0];
+        double z = transform.transformZ(position.getX() - 0.5D, position.getZ() - 0.5D) + 0.5D + offset[2];
+
+        Vector blockPosition = entity.getBlockPosition();
+        int blockX = transform.transformX(blockPosition.getBlockX(), blockPosition.getBlockZ()) + offset[0];
+        int blockZ = transform.transformZ(blockPosition.getBlockX(), blockPosition.getBlockZ()) + offset[2];
+
+        return new Structure.EntityInfo(new Vector(x, position.getY() + offset[1], z), new Vector(blockX, blockPosition.getBlockY() + offset[1], blockZ), transformRotation(entity.getNBT()), entity.getType());
+    }
+
+    private CompoundTag transformRotation(CompoundTag nbt)
+    {
+        if (transform.isIdentity() || (!nbt.containsKey("Rotation") && !nbt.containsKey("Facing")))
+            return nbt;
+
+        Map<String, Tag> values = Maps.newHashMap(nbt.getValue());
+        if (nbt.containsKey("Rotation"))
+        {
+            ListTag rotation = nbt.getListTag("Rotation");
+            values.put("Rotation", new FloatListTag(new float[]{transform.transformYaw(rotation.getFloat(0)), rotation.getFloat(1)}));
+        }
+
+        //hanging entities store the face they hang on; item frames index all 6 faces, paintings only the horizontal ones
+        if (nbt.containsKey("Facing"))
+        {
+            BlockFace[] faces = "minecraft:item_frame".equals(nbt.getString("id")) ? FACING_3D : FACING_2D;
+            int facing = nbt.getByte("Facing");
+            if (facing >= 0 && facing < faces.length)
+                values.put("Facing", new ByteTag((byte) indexOf(faces, transform.transform(faces[facing]))));
+        }
+
+        return new CompoundTag(values);
+    }
+
+    private static int indexOf(BlockFace[] faces, BlockFace face)
+    {
+        for (int i = 0; i < faces.length; i++)
+        {
+            if (faces[i] == face)
+                return i;
+        }
+
+        throw new IllegalArgumentException("Not a hanging face: " + face);
+    }
+
+    /**
+     * @return the x offset from the placement anchor of the block at the given storage index
+     */
+    public int getX(int index)
+    {
+        return transform.transformX(origin[0] + blocks.getX(index), origin[2] + blocks.getZ(index)) + offset[0];
+    }
+
+    public int getY(int index)
+    {
+        return origin[1] + blocks.getY(index) + offset[1];
+    }
+
+    public int getZ(int index)
+    {
+        return transform.transformZ(origin[0] + blocks.getX(index), origin[2] + blocks.getZ(index)) + offset[2];
+    }
+
+    /**
+     * @return the smallest offset from the placement anchor covered by this view
+     */
+    public int[] getMin()
+    {
+        return min.clone();
+    }
+
+    /**
+     * @return the largest offset from the placement anchor covered by this view
+     */
+    public int[] getMax()
+    {
+        return max.clone();
+    }
+
+    private void computeBounds()
+    {
+        int cornerX = origin[0] + blocks.getSizeX() - 1;
+        int cornerZ = origin[2] + blocks.getSizeZ() - 1;
+
+        int x1 = transform.transformX(origin[0], origin[2]);
+        int z1 = transform.transformZ(origin[0], origin[2]);
+        int x2 = transform.transformX(cornerX, cornerZ);
+        int z2 = transform.transformZ(cornerX, cornerZ);
+
+        min[0] = Math.min(x1, x2) + offset[0];
+        min[1] = origin[1] + offset[1];
+        min[2] = Math.min(z1, z2) + offset[2];
+        max[0] = Math.max(x1, x2) + offset[0];
+        max[1] = origin[1] + blocks.getSizeY() - 1 + offset[1];
+        max[2] = Math.max(z1, z2) + offset[2];
+    }
+}
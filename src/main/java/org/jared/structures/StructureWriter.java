@@ -0,0 +1,185 @@
+package org.jared.structures;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.bukkit.util.Vector;
+import org.jared.structures.nbt.*;
+import org.jared.structures.nbt.util.NBTUpdater;
+import org.jared.structures.storage.BlockEntityTable;
+import org.jared.structures.storage.BlockStorage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Turns a block storage back into the vanilla structure format. The palette is rebuilt from the states that are
+ * actually used, so ids whose states became equal, e.g. after a rotation, share one entry. Block tags are only created
+ * while the block list is being written, one at a time, in the storage's Y/Z/X order.
+ */
+class StructureWriter
+{
+    private final BlockStorage blocks;
+    private final BlockEntityTable blockEntities;
+    private final String[] states;
+
+    /**
+     * @param states the block state string of every palette id, as in {@code minecraft:oak_log[axis=x]}
+     */
+    StructureWriter(BlockStorage blocks, BlockEntityTable blockEntities, String[] states)
+    {
+        this.blocks = blocks;
+        this.blockEntities = blockEntities;
+        this.states = states;
+    }
+
+    CompoundTag createTag(int[] origin, List<Structure.EntityInfo> entities)
+    {
+        int[] fileStates = new int[states.length];
+        Arrays.fill(fileStates, -1);
+
+        Map<String, Integer> stateIds = Maps.newHashMap();
+        List<Tag> palette = Lists.newArrayList();
+
+        int[] indices = new int[blocks.getBlockCount()];
+        int count = 0;
+
+        for (int index = 0; index < blocks.getVolume(); index++)
+        {
+            int id = blocks.get(index);
+            if (id == BlockStorage.EMPTY)
+                continue;
+
+            if (fileStates[id] < 0)
+            {
+                Integer state = stateIds.get(states[id]);
+                if (state == null)
+                {
+                    state = palette.size();
+                    palette.add(parseState(states[id]));
+                    stateIds.put(states[id], state);
+                }
+
+                fileStates[id] = state;
+            }
+
+            indices[count++] = index;
+        }
+
+        Map<String, Tag> structure = Maps.newHashMap();
+        structure.put("DataVersion", new IntTag(NBTUpdater.TARGET_DATA_VERSION));
+        structure.put("size", new IntListTag(new int[]{blocks.getSizeX(), blocks.getSizeY(), blocks.getSizeZ()}));
+        structure.put("palette", new ListTag(CompoundTag.class, palette));
+        structure.put("blocks", ListTag.view(CompoundTag.class, new BlockList(indices, fileStates)));
+        structure.put("entities", new ListTag(CompoundTag.class, createEntityTags(origin, entities)));
+
+        return new CompoundTag(structure);
+    }
+
+    /**
+     * Entity positions are relative to the placement anchor, while the file is relative to the storage's first
+     * position, so they are moved by the origin.
+     */
+    private static List<Tag> createEntityTags(int[] origin, List<Structure.EntityInfo> entities)
+    {
+        List<Tag> tags = Lists.newArrayListWithCapacity(entities.size());
+        for (Structure.EntityInfo entity : entities)
+        {
+            Vector position = entity.getPosition();
+            Vector blockPosition = entity.getBlockPosition();
+
+            Map<String, Tag> tag = Maps.newHashMap();
+            tag.put("pos", new DoubleListTag(new double[]{position.getX() - origin[0], position.getY() - origin[1], position.getZ() - origin[2]}));
+            tag.put("blockPos", new IntListTag(new int[]{blockPosition.getBlockX() - origin[0], blockPosition.getBlockY() - origin[1], blockPosition.getBlockZ() - origin[2]}));
+            tag.put("nbt", entity.getNBT());
+            tags.add(new CompoundTag(tag));
+        }
+
+        return tags;
+    }
+
+    /**
+     * Formats a palette entry the way {@code BlockData#getAsString()} does, with the properties in the file's order.
+     */
+    static String toStateString(CompoundTag state)
+    {
+        StringBuilder builder = new StringBuilder(state.containsKey("Name") ? state.getString("Name") : "minecraft:air");
+
+        if (state.containsKey("Properties"))
+        {
+            Map<String, Tag> properties = ((CompoundTag) state.getValue().get("Properties")).getValue();
+            if (!properties.isEmpty())
+            {
+                builder.append('[');
+                for (Map.Entry<String, Tag> property : properties.entrySet())
+                {
+                    builder.append(property.getKey()).append('=').append(property.getValue().asString()).append(',');
+                }
+                builder.setCharAt(builder.length() - 1, ']');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    static CompoundTag parseState(String state)
+    {
+        Map<String, Tag> tag = Maps.newHashMap();
+
+        int propertiesStart = state.indexOf('[');
+        if (propertiesStart < 0)
+        {
+            tag.put("Name", new StringTag(state));
+            return new CompoundTag(tag);
+        }
+
+        tag.put("Name", new StringTag(state.substring(0, propertiesStart)));
+
+        Map<String, Tag> properties = Maps.newHashMap();
+        for (String property : state.substring(propertiesStart + 1, state.length() - 1).split(","))
+        {
+            int separator = property.indexOf('=');
+            if (separator > 0)
+                properties.put(property.substring(0, separator), new StringTag(property.substring(separator + 1)));
+        }
+
+        tag.put("Properties", new CompoundTag(properties));
+        return new CompoundTag(tag);
+    }
+
+    private class BlockList extends AbstractList<Tag> implements RandomAccess
+    {
+        private final int[] indices;
+        private final int[] fileStates;
+
+        private BlockList(int[] indices, int[] fileStates)
+        {
+            this.indices = indices;
+            this.fileStates = fileStates;
+        }
+
+        @Override
+        public Tag get(int i)
+        {
+            int index = indices[i];
+
+            Map<String, Tag> block = Maps.newHashMapWithExpectedSize(3);
+            block.put("pos", new IntListTag(new int[]{blocks.getX(index), blocks.getY(index), blocks.getZ(index)}));
+            block.put("state", new IntTag(fileStates[blocks.get(index)]));
+
+            int entry = blockEntities.find(index);
+            if (entry >= 0)
+                block.put("nbt", blockEntities.getTag(entry));
+
+            return new CompoundTag(block);
+        }
+
+        @Override
+        public int size()
+        {
+            return indices.length;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.jared.structures.nbt;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads primitives of a given byte order through a reusable {@link ByteBuffer} window. Either refills the window
+ * from an {@link InputStream}, or reads straight out of a byte array it wraps, in which case
+ * {@link #position()} is the absolute offset into that array.
+ */
+final class ByteBufferInput implements Closeable
+{
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+
+    ByteBufferInput(InputStream in, ByteOrder order)
+    {
+        this(in, order, DEFAULT_BUFFER_SIZE);
+    }
+
+    ByteBufferInput(InputStream in, ByteOrder order, int bufferSize)
+    {
+        this.in = in;
+        this.bytes = new byte[Math.max(16, bufferSize)];
+        this.buffer = ByteBuffer.wrap(bytes).order(order);
+        this.buffer.limit(0);
+    }
+
+    ByteBufferInput(byte[] data, int offset, int length, ByteOrder order)
+    {
+        this.in = null;
+        this.bytes = data;
+        this.buffer = ByteBuffer.wrap(data, offset, length).order(order);
+    }
+
+    ByteOrder order()
+    {
+        return buffer.order();
+    }
+
+    /**
+     * @return the read offset into the wrapped array; only meaningful when reading from an array
+     */
+    int position()
+    {
+        return buffer.position();
+    }
+
+    void position(int position)
+    {
+        buffer.position(position);
+    }
+
+    byte[] array()
+    {
+        return bytes;
+    }
+
+    byte readByte() throws IOException
+    {
+        ensure(1);
+        return buffer.get();
+    }
+
+    short readShort() throws IOException
+    {
+        ensure(2);
+        return buffer.getShort();
+    }
+
+    int readUnsignedShort() throws IOException
+    {
+        return readShort() & 0xFFFF;
+    }
+
+    int readInt() throws IOException
+    {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    long readLong() throws IOException
+    {
+        ensure(8);
+        return buffer.getLong();
+    }
+
+    float readFloat() throws IOException
+    {
+        ensure(4);
+        return buffer.getFloat();
+    }
+
+    double readDouble() throws IOException
+    {
+        ensure(8);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads a string prefixed with its unsigned 16 bit byte length, decoding it directly out of the window when it
+     * fits.
+     */
+    String readString() throws IOException
+    {
+        int length = readUnsignedShort();
+        if (length <= bytes.length)
+        {
+            ensure(length);
+            String value = new String(bytes, buffer.arrayOffset() + buffer.position(), length, NBTConstants.CHARSET);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        byte[] stringBytes = new byte[length];
+        readFully(stringBytes, 0, length);
+        return new String(stringBytes, NBTConstants.CHARSET);
+    }
+
+    void readFully(byte[] target, int offset, int length) throws IOException
+    {
+        int buffered = Math.min(buffer.remaining(), length);
+        buffer.get(target, offset, buffered);
+        offset += buffered;
+        length -= buffered;
+
+        if (length > 0)
+        {
+            if (in == null)
+                throw new EOFException();
+
+            while (length > 0)
+            {
+                int read = in.read(target, offset, length);
+                if (read < 0)
+                    throw new EOFException();
+
+                offset += read;
+                length -= read;
+            }
+        }
+    }
+
+    /**
+     * Copies bytes straight out of the window into {@code out}, refilling the window as needed.
+     */
+    void copyTo(ByteBufferOutput out, long length) throws IOException
+    {
+        while (length > 0)
+        {
+            ensure(1);
+            int count = (int) Math.min(buffer.remaining(), length);
+
+            out.write(bytes, buffer.arrayOffset() + buffer.position(), count);
+            buffer.position(buffer.position() + count);
+            length -= count;
+        }
+    }
+
+    void readInts(int[] target) throws IOException
+    {
+        int offset = 0;
+        while (offset < target.length)
+        {
+            ensure(4);
+            int count = Math.min(buffer.remaining() / 4, target.length - offset);
+
+            buffer.asIntBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * 4);
+            offset += count;
+        }
+    }
+
+    void readLongs(long[] target) throws IOException
+    {
+        int offset = 0;
+        while (offset < target.length)
+        {
+            ensure(8);
+            int count = Math.min(buffer.remaining() / 8, target.length - offset);
+
+            buffer.asLongBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    void readFloats(float[] target) throws IOException
+    {
+        int offset = 0;
+        while (offset < target.length)
+        {
+            ensure(4);
+            int count = Math.min(buffer.remaining() / 4, target.length - offset);
+
+            buffer.asFloatBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * 4);
+            offset += count;
+        }
+    }
+
+    void readDoubles(double[] target) throws IOException
+    {
+        int offset = 0;
+        while (offset < target.length)
+        {
+            ensure(8);
+            int count = Math.min(buffer.remaining() / 8, target.length - offset);
+
+            buffer.asDoubleBuffer().get(target, offset, count);
+            buffer.position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    void skip(long length) throws IOException
+    {
+        int buffered = (int) Math.min(buffer.remaining(), length);
+        buffer.position(buffer.position() + buffered);
+        length -= buffered;
+
+        while (length > 0)
+        {
+            if (in == null)
+                throw new EOFException();
+
+            long skipped = in.skip(length);
+            if (skipped <= 0)
+            {
+                if (in.read() < 0)
+                    throw new EOFException();
+                skipped = 1;
+            }
+
+            length -= skipped;
+        }
+    }
+
+    /**
+     * Makes sure at least {@code count} bytes are buffered, refilling the window from the stream if necessary.
+     */
+    private void ensure(int count) throws IOException
+    {
+        if (buffer.remaining() >= count)
+            return;
+
+        if (in == null)
+            throw new EOFException();
+
+        buffer.compact();
+        try
+        {
+            while (buffer.position() < count)
+            {
+                int read = in.read(bytes, buffer.position(), bytes.length - buffer.position());
+                if (read < 0)
+                    throw new EOFException();
+
+                buffer.position(buffer.position() + read);
+            }
+        }
+        finally
+        {
+            buffer.flip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (in != null)
+            in.close();
+    }
+}
@@ -0,0 +1,239 @@
+package org.jared.structures.nbt;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes primitives of a given byte order through a reusable {@link ByteBuffer} window. Either drains the window into
+ * an {@link OutputStream} whenever it fills up, or writes straight into a buffer given by the caller, in which case
+ * running out of room throws a {@link BufferOverflowException}.
+ */
+final class ByteBufferOutput implements Closeable, Flushable
+{
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final ByteBuffer buffer;
+
+    ByteBufferOutput(OutputStream out, ByteOrder order)
+    {
+        this(out, order, DEFAULT_BUFFER_SIZE);
+    }
+
+    ByteBufferOutput(OutputStream out, ByteOrder order, int bufferSize)
+    {
+        this.out = out;
+        this.buffer = ByteBuffer.allocate(Math.max(16, bufferSize)).order(order);
+    }
+
+    /**
+     * Writes into {@code target} from its current position, using its byte order.
+     */
+    ByteBufferOutput(ByteBuffer target)
+    {
+        this.out = null;
+        this.buffer = target;
+    }
+
+    ByteOrder order()
+    {
+        return buffer.order();
+    }
+
+    void writeByte(int value) throws IOException
+    {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    void writeShort(int value) throws IOException
+    {
+        ensure(2);
+        buffer.putShort((short) value);
+    }
+
+    void writeInt(int value) throws IOException
+    {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void writeLong(long value) throws IOException
+    {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void writeFloat(float value) throws IOException
+    {
+        ensure(4);
+        buffer.putFloat(value);
+    }
+
+    void writeDouble(double value) throws IOException
+    {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes a string prefixed with its unsigned 16 bit byte length. ASCII strings are copied into the window char by
+     * char instead of being encoded to a temporary array first.
+     */
+    void writeString(String value) throws IOException
+    {
+        int length = NBTOutputStream.sizeOfString(value);
+        if (length > 0xFFFF)
+            throw new IOException("String too long to write: " + length + " bytes.");
+
+        writeShort(length);
+        if (length == value.length())
+        {
+            int offset = 0;
+            while (offset < length)
+            {
+                ensure(1);
+                int count = Math.min(buffer.remaining(), length - offset);
+                for (int i = 0; i < count; i++)
+                {
+                    buffer.put((byte) value.charAt(offset + i));
+                }
+                offset += count;
+            }
+        }
+        else
+        {
+            byte[] bytes = value.getBytes(NBTConstants.CHARSET);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    void write(byte[] source, int offset, int length) throws IOException
+    {
+        if (out != null && length > buffer.capacity())
+        {
+            flush();
+            out.write(source, offset, length);
+            return;
+        }
+
+        while (length > 0)
+        {
+            ensure(1);
+            int count = Math.min(buffer.remaining(), length);
+            buffer.put(source, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void writeInts(int[] source) throws IOException
+    {
+        int offset = 0;
+        while (offset < source.length)
+        {
+            ensure(4);
+            int count = Math.min(buffer.remaining() / 4, source.length - offset);
+
+            buffer.asIntBuffer().put(source, offset, count);
+            buffer.position(buffer.position() + count * 4);
+            offset += count;
+        }
+    }
+
+    void writeLongs(long[] source) throws IOException
+    {
+        int offset = 0;
+        while (offset < source.length)
+        {
+            ensure(8);
+            int count = Math.min(buffer.remaining() / 8, source.length - offset);
+
+            buffer.asLongBuffer().put(source, offset, count);
+            buffer.position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    void writeFloats(float[] source) throws IOException
+    {
+        int offset = 0;
+        while (offset < source.length)
+        {
+            ensure(4);
+            int count = Math.min(buffer.remaining() / 4, source.length - offset);
+
+            buffer.asFloatBuffer().put(source, offset, count);
+            buffer.position(buffer.position() + count * 4);
+            offset += count;
+        }
+    }
+
+    void writeDoubles(double[] source) throws IOException
+    {
+        int offset = 0;
+        while (offset < source.length)
+        {
+            ensure(8);
+            int count = Math.min(buffer.remaining() / 8, source.length - offset);
+
+            buffer.asDoubleBuffer().put(source, offset, count);
+            buffer.position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    /**
+     * Makes sure there is room for at least {@code count} bytes, draining the window into the stream if necessary.
+     */
+    private void ensure(int count) throws IOException
+    {
+        if (buffer.remaining() >= count)
+            return;
+
+        if (out == null)
+            throw new BufferOverflowException();
+
+        drain();
+    }
+
+    private void drain() throws IOException
+    {
+        if (buffer.position() > 0)
+        {
+            out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        if (out != null)
+        {
+            drain();
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (out != null)
+        {
+            try
+            {
+                drain();
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+}
@@ -434,7 +434,7 @@ public final class CompoundTag extends Tag
     public long[] getLongArray(String key)
     {
         Tag tag = value.get(key);
-        if (tag instanceof IntArrayTag)
+        if (tag instanceof LongArrayTag)
         {
             return ((LongArrayTag) tag).getValue();
         }
@@ -0,0 +1,78 @@
+package org.jared.structures.nbt;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A {@code TAG_List} of {@code TAG_Double} backed by a {@code double[]}. {@link #getValue()} is a read-only view
+ * that boxes on access; {@link #getDouble(int)} and the {@code as} getters read the array directly.
+ */
+public final class DoubleListTag extends ListTag
+{
+    private final double[] values;
+
+    /**
+     * Creates the tag around the given values, without copying them.
+     *
+     * @param values the values
+     */
+    public DoubleListTag(double[] values)
+    {
+        super(new View(values), DoubleTag.class);
+        this.values = values;
+    }
+
+    /**
+     * @return the backing array
+     */
+    public double[] getDoubleValues()
+    {
+        return values;
+    }
+
+    @Override
+    public double getDouble(int index)
+    {
+        return values[index];
+    }
+
+    @Override
+    public int asInt(int index)
+    {
+        return (int) values[index];
+    }
+
+    @Override
+    public long asLong(int index)
+    {
+        return (long) values[index];
+    }
+
+    @Override
+    public double asDouble(int index)
+    {
+        return values[index];
+    }
+
+    private static final class View extends AbstractList<Tag> implements RandomAccess
+    {
+        private final double[] values;
+
+        private View(double[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Tag get(int index)
+        {
+            return new DoubleTag(values[index]);
+        }
+
+        @Override
+        public int size()
+        {
+            return values.length;
+        }
+    }
+}
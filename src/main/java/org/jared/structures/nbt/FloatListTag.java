@@ -0,0 +1,78 @@
+package org.jared.structures.nbt;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A {@code TAG_List} of {@code TAG_Float} backed by a {@code float[]}. {@link #getValue()} is a read-only view
+ * that boxes on access; {@link #getFloat(int)} and the {@code as} getters read the array directly.
+ */
+public final class FloatListTag extends ListTag
+{
+    private final float[] values;
+
+    /**
+     * Creates the tag around the given values, without copying them.
+     *
+     * @param values the values
+     */
+    public FloatListTag(float[] values)
+    {
+        super(new View(values), FloatTag.class);
+        this.values = values;
+    }
+
+    /**
+     * @return the backing array
+     */
+    public float[] getFloatValues()
+    {
+        return values;
+    }
+
+    @Override
+    public float getFloat(int index)
+    {
+        return values[index];
+    }
+
+    @Override
+    public int asInt(int index)
+    {
+        return (int) values[index];
+    }
+
+    @Override
+    public long asLong(int index)
+    {
+        return (long) values[index];
+    }
+
+    @Override
+    public double asDouble(int index)
+    {
+        return values[index];
+    }
+
+    private static final class View extends AbstractList<Tag> implements RandomAccess
+    {
+        private final float[] values;
+
+        private View(float[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Tag get(int index)
+        {
+            return new FloatTag(values[index]);
+        }
+
+        @Override
+        public int size()
+        {
+            return values.length;
+        }
+    }
+}
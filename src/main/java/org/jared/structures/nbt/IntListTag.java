@@ -0,0 +1,78 @@
+package org.jared.structures.nbt;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A {@code TAG_List} of {@code TAG_Int} backed by an {@code int[]}. {@link #getValue()} is a read-only view
+ * that boxes on access; {@link #getInt(int)} and the {@code as} getters read the array directly.
+ */
+public final class IntListTag extends ListTag
+{
+    private final int[] values;
+
+    /**
+     * Creates the tag around the given values, without copying them.
+     *
+     * @param values the values
+     */
+    public IntListTag(int[] values)
+    {
+        super(new View(values), IntTag.class);
+        this.values = values;
+    }
+
+    /**
+     * @return the backing array
+     */
+    public int[] getIntValues()
+    {
+        return values;
+    }
+
+    @Override
+    public int getInt(int index)
+    {
+        return values[index];
+    }
+
+    @Override
+    public int asInt(int index)
+    {
+        return values[index];
+    }
+
+    @Override
+    public long asLong(int index)
+    {
+        return values[index];
+    }
+
+    @Override
+    public double asDouble(int index)
+    {
+        return values[index];
+    }
+
+    private static final class View extends AbstractList<Tag> implements RandomAccess
+    {
+        private final int[] values;
+
+        private View(int[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Tag get(int index)
+        {
+            return new IntTag(values[index]);
+        }
+
+        @Override
+        public int size()
+        {
+            return values.length;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.jared.structures.nbt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The children of a compound read in lazy mode, see {@link NBTInputStream#NBTInputStream(java.io.InputStream,
+ * boolean, ByteOrder, boolean)}. Only the offsets of the children into the raw data are kept; a child is decoded when it is
+ * first asked for and then cached. Looking up a key compares it against the raw name bytes, so keys that are never
+ * read are never turned into strings or tags.
+ *
+ * <p>The map keeps the whole data array of the stream it was read from alive.</p>
+ */
+final class LazyTagMap extends AbstractMap<String, Tag>
+{
+    private final byte[] data;
+    private final ByteOrder order;
+    private final byte[] types;
+    private final int[] keyOffsets;
+    private final int size;
+    private final int depth;
+
+    private final Tag[] values;
+    private String[] keys;
+    private Set<Entry<String, Tag>> entrySet;
+
+    /**
+     * @param data the raw data of the stream
+     * @param order the byte order of the data
+     * @param types the type ids of the children
+     * @param keyOffsets the offsets of the length prefixed names of the children, each directly followed by its payload
+     * @param size the number of children
+     * @param depth the depth of the children
+     */
+    LazyTagMap(byte[] data, ByteOrder order, byte[] types, int[] keyOffsets, int size, int depth)
+    {
+        this.data = data;
+        this.order = order;
+        this.types = types;
+        this.keyOffsets = keyOffsets;
+        this.size = size;
+        this.depth = depth;
+        this.values = new Tag[size];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Tag get(Object key)
+    {
+        int index = indexOf(key);
+        return index >= 0 ? getValue(index) : null;
+    }
+
+    @Override
+    public Set<Entry<String, Tag>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Entry<String, Tag>>()
+            {
+                @Override
+                public Iterator<Entry<String, Tag>> iterator()
+                {
+                    return new Iterator<Entry<String, Tag>>()
+                    {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Entry<String, Tag> next()
+                        {
+                            if (index >= size)
+                                throw new NoSuchElementException();
+
+                            Entry<String, Tag> entry = new SimpleImmutableEntry<>(getKey(index), getValue(index));
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return size;
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    /**
+     * Finds a child by name. Searches from the end, so that a duplicated name resolves to its last value like it
+     * does when a compound is read into a {@link java.util.HashMap}.
+     */
+    private int indexOf(Object key)
+    {
+        if (!(key instanceof String))
+            return -1;
+
+        String name = (String) key;
+        for (int i = size - 1; i >= 0; i--)
+        {
+            if (matches(i, name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    private boolean matches(int index, String name)
+    {
+        int offset = keyOffsets[index] + 2;
+        int length = getNameLength(index);
+
+        //a char never takes less than one byte
+        if (length < name.length())
+            return false;
+
+        for (int i = 0; i < length; i++)
+        {
+            byte b = data[offset + i];
+            if (b < 0)
+                return getKey(index).equals(name);
+
+            if (i >= name.length() || name.charAt(i) != b)
+                return false;
+        }
+
+        return length == name.length();
+    }
+
+    private int getNameLength(int index)
+    {
+        int offset = keyOffsets[index];
+        int first = data[offset] & 0xFF;
+        int second = data[offset + 1] & 0xFF;
+
+        return order == ByteOrder.BIG_ENDIAN ? first << 8 | second : second << 8 | first;
+    }
+
+    private String getKey(int index)
+    {
+        if (keys == null)
+            keys = new String[size];
+
+        String key = keys[index];
+        if (key == null)
+        {
+            key = new String(data, keyOffsets[index] + 2, getNameLength(index), NBTConstants.CHARSET);
+            keys[index] = key;
+        }
+
+        return key;
+    }
+
+    private Tag getValue(int index)
+    {
+        Tag value = values[index];
+        if (value == null)
+        {
+            int offset = keyOffsets[index] + 2 + getNameLength(index);
+
+            try
+            {
+                NBTInputStream inputStream = new NBTInputStream(new ByteBufferInput(data, offset, data.length - offset, order), true);
+                value = inputStream.readTagPayload(types[index] & 0xFF, depth);
+            }
+            catch (IOException e)
+            {
+                //the payload has already been walked over when the compound was read
+                throw new UncheckedIOException(e);
+            }
+
+            values[index] = value;
+        }
+
+        return value;
+    }
+}
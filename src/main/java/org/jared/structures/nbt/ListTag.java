@@ -44,7 +44,7 @@ import java.util.NoSuchElementException;
 /**
  * The {@code TAG_List} tag.
  */
-public final class ListTag extends Tag {
+public class ListTag extends Tag {
 
     private final Class<? extends Tag> type;
     private final List<Tag> value;
@@ -67,6 +67,32 @@ public final class ListTag extends Tag {
         this.value = Lists.newArrayList(value);
     }
 
+    /**
+     * Creates the tag around a view of a subclass' own storage, which is
+     * used as the value as is.
+     *
+     * @param view the view of the values
+     * @param type the type of tag
+     */
+    ListTag(List<Tag> view, Class<? extends Tag> type) {
+        super();
+        this.type = type;
+        this.value = view;
+    }
+
+    /**
+     * Creates the tag around a list without copying it, e.g. a list that
+     * creates its elements on access while it is written. The list must not
+     * change while the tag is in use.
+     *
+     * @param type the type of tag
+     * @param values the values of the tag
+     * @return the tag
+     */
+    public static ListTag view(Class<? extends Tag> type, List<Tag> values) {
+        return new ListTag(values, type);
+    }
+
     /**
      * Gets the type of item in this list.
      *
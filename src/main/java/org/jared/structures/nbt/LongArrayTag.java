@@ -121,7 +121,7 @@ public class LongArrayTag extends Tag {
 
 		if (this == obj) { return true; }
 		if (!super.equals(obj)) { return false; }
-		if (!(obj instanceof IntArrayTag)) { return false; }
+		if (!(obj instanceof LongArrayTag)) { return false; }
 		final LongArrayTag other = (LongArrayTag) obj;
 		if (!Arrays.equals(value, other.value)) { return false; }
 		return true;
@@ -33,11 +33,13 @@
 
 package org.jared.structures.nbt;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,7 +56,17 @@ import java.util.zip.GZIPInputStream;
  */
 public final class NBTInputStream implements Closeable {
 
-    private final EndianSwitchableInputStream is;
+    private static final int MAX_DEPTH = 512;
+
+    private final ByteBufferInput is;
+    private final boolean lazy;
+
+    /**
+     * Scratch output for {@link NBTVisitor.Action#READ_RAW}, shared by all
+     * raw values of this stream.
+     */
+    private ByteArrayOutputStream rawBytes;
+    private ByteBufferOutput rawOutput;
 
     /**
      * Creates a new {@code NBTInputStream}, which will source its data
@@ -64,7 +76,70 @@ public final class NBTInputStream implements Closeable {
      * @throws IOException if an I/O error occurs
      */
     public NBTInputStream(InputStream is, boolean compressed) throws IOException {
-        this.is = new EndianSwitchableInputStream(compressed ? new GZIPInputStream(is) : is, ByteOrder.BIG_ENDIAN);
+        this(is, compressed, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Creates a new {@code NBTInputStream}, which will source its data
+     * from the specified input stream.
+     *
+     * <p>Reads go through a reusable buffer, so the stream does not need
+     * to be buffered by the caller.</p>
+     *
+     * @param is the input stream
+     * @param compressed whether the stream is GZIP compressed
+     * @param order the byte order of the data
+     * @throws IOException if an I/O error occurs
+     */
+    public NBTInputStream(InputStream is, boolean compressed, ByteOrder order) throws IOException {
+        this.is = new ByteBufferInput(compressed ? new GZIPInputStream(is, ByteBufferInput.DEFAULT_BUFFER_SIZE) : is, order);
+        this.lazy = false;
+    }
+
+    /**
+     * Creates a new {@code NBTInputStream}, which will source its data
+     * from the specified input stream.
+     *
+     * <p>In lazy mode the whole stream is read up front, and compounds
+     * only remember where their children are; a child is decoded the
+     * first time it is asked for. Every compound then keeps the data of
+     * the whole stream alive, so tags read this way should not outlive
+     * the work they were read for.</p>
+     *
+     * @param is the input stream
+     * @param compressed whether the stream is GZIP compressed
+     * @param order the byte order of the data
+     * @param lazy whether compounds are decoded lazily
+     * @throws IOException if an I/O error occurs
+     */
+    public NBTInputStream(InputStream is, boolean compressed, ByteOrder order, boolean lazy) throws IOException {
+        if (lazy) {
+            try (InputStream in = compressed ? new GZIPInputStream(is, ByteBufferInput.DEFAULT_BUFFER_SIZE) : is) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(ByteBufferInput.DEFAULT_BUFFER_SIZE);
+                byte[] buffer = new byte[ByteBufferInput.DEFAULT_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+
+                byte[] data = out.toByteArray();
+                this.is = new ByteBufferInput(data, 0, data.length, order);
+            }
+        } else {
+            this.is = new ByteBufferInput(compressed ? new GZIPInputStream(is, ByteBufferInput.DEFAULT_BUFFER_SIZE) : is, order);
+        }
+        this.lazy = lazy;
+    }
+
+    /**
+     * Creates a new {@code NBTInputStream} reading from an existing input.
+     *
+     * @param is the input
+     * @param lazy whether compounds are decoded lazily, which requires the input to wrap an array
+     */
+    NBTInputStream(ByteBufferInput is, boolean lazy) {
+        this.is = is;
+        this.lazy = lazy;
     }
 
     /**
@@ -77,6 +152,304 @@ public final class NBTInputStream implements Closeable {
         return readNamedTag(0);
     }
 
+    /**
+     * Reads the root tag from the stream and reports its contents to the
+     * given visitor, without building a tree of tags for the parts the
+     * visitor visits or skips.
+     *
+     * @param visitor the visitor
+     * @throws IOException if an I/O error occurs.
+     */
+    public void accept(NBTVisitor visitor) throws IOException {
+        int type = is.readByte() & 0xFF;
+        if (type == NBTConstants.TYPE_END) {
+            throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+        }
+
+        acceptNamed(type, is.readString(), visitor, 0);
+    }
+
+    private void acceptNamed(int type, String name, NBTVisitor visitor, int depth) throws IOException {
+        switch (visitor.key(name, type)) {
+        case VISIT:
+            acceptPayload(type, visitor, depth);
+            break;
+        case SKIP:
+            skipPayload(type, depth);
+            break;
+        case READ_TAG:
+            visitor.tagValue(readTagPayload(type, depth));
+            break;
+        case READ_RAW:
+            if (rawOutput == null) {
+                rawBytes = new ByteArrayOutputStream();
+                rawOutput = new ByteBufferOutput(rawBytes, is.order(), 256);
+            }
+
+            rawBytes.reset();
+            copyPayload(type, rawOutput, depth);
+            rawOutput.flush();
+            visitor.rawValue(type, rawBytes.toByteArray());
+            break;
+        }
+    }
+
+    /**
+     * Decodes a payload delivered by {@link NBTVisitor#rawValue(int, byte[])}.
+     * Compounds are decoded lazily, so children that are never asked for are
+     * never decoded.
+     *
+     * @param type the type id of the payload
+     * @param payload the encoded payload
+     * @param order the byte order of the payload
+     * @return the decoded tag
+     * @throws IOException if the payload is malformed
+     */
+    public static Tag readPayload(int type, byte[] payload, ByteOrder order) throws IOException {
+        return new NBTInputStream(new ByteBufferInput(payload, 0, payload.length, order), true).readTagPayload(type, 0);
+    }
+
+    /**
+     * Copies the payload of a tag given the type, without decoding it.
+     *
+     * @param type the type
+     * @param out where the payload is copied to, in the same byte order
+     * @param depth the depth
+     * @throws IOException if an I/O error occurs.
+     */
+    private void copyPayload(int type, ByteBufferOutput out, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+
+        switch (type) {
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            int byteLength = is.readInt();
+            out.writeInt(byteLength);
+            copyBytes(byteLength & 0xFFFFFFFFL, out);
+            break;
+        case NBTConstants.TYPE_STRING:
+            int stringLength = is.readUnsignedShort();
+            out.writeShort(stringLength);
+            copyBytes(stringLength, out);
+            break;
+        case NBTConstants.TYPE_LIST:
+            int childType = is.readByte() & 0xFF;
+            int length = is.readInt();
+            out.writeByte(childType);
+            out.writeInt(length);
+
+            int width = getPayloadWidth(childType);
+            if (width > 0) {
+                copyBytes((long) width * length, out);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    copyPayload(childType, out, depth + 1);
+                }
+            }
+            break;
+        case NBTConstants.TYPE_COMPOUND:
+            while (true) {
+                int childTagType = is.readByte() & 0xFF;
+                out.writeByte(childTagType);
+                if (childTagType == NBTConstants.TYPE_END) {
+                    break;
+                }
+
+                int nameLength = is.readUnsignedShort();
+                out.writeShort(nameLength);
+                copyBytes(nameLength, out);
+                copyPayload(childTagType, out, depth + 1);
+            }
+            break;
+        case NBTConstants.TYPE_INT_ARRAY:
+            int intLength = is.readInt();
+            out.writeInt(intLength);
+            copyBytes(4L * (intLength & 0xFFFFFFFFL), out);
+            break;
+        case NBTConstants.TYPE_LONG_ARRAY:
+            int longLength = is.readInt();
+            out.writeInt(longLength);
+            copyBytes(8L * (longLength & 0xFFFFFFFFL), out);
+            break;
+        default:
+            int fixedWidth = getPayloadWidth(type);
+            if (fixedWidth == 0) {
+                throw new IOException("Invalid tag type: " + type + ".");
+            }
+            copyBytes(fixedWidth, out);
+            break;
+        }
+    }
+
+    /**
+     * Copies bytes as they are, which keeps multi-byte values in the byte
+     * order they were read in.
+     */
+    private void copyBytes(long length, ByteBufferOutput out) throws IOException {
+        is.copyTo(out, length);
+    }
+
+    private void acceptPayload(int type, NBTVisitor visitor, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+
+        switch (type) {
+        case NBTConstants.TYPE_BYTE:
+            visitor.byteValue(is.readByte());
+            break;
+        case NBTConstants.TYPE_SHORT:
+            visitor.shortValue(is.readShort());
+            break;
+        case NBTConstants.TYPE_INT:
+            visitor.intValue(is.readInt());
+            break;
+        case NBTConstants.TYPE_LONG:
+            visitor.longValue(is.readLong());
+            break;
+        case NBTConstants.TYPE_FLOAT:
+            visitor.floatValue(is.readFloat());
+            break;
+        case NBTConstants.TYPE_DOUBLE:
+            visitor.doubleValue(is.readDouble());
+            break;
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            byte[] bytes = new byte[is.readInt()];
+            is.readFully(bytes, 0, bytes.length);
+            visitor.byteArrayValue(bytes);
+            break;
+        case NBTConstants.TYPE_STRING:
+            visitor.stringValue(is.readString());
+            break;
+        case NBTConstants.TYPE_LIST:
+            int childType = is.readByte() & 0xFF;
+            int length = is.readInt();
+
+            visitor.startList(childType, length);
+            for (int i = 0; i < length; i++) {
+                if (childType == NBTConstants.TYPE_END) {
+                    throw new IOException("TAG_End not permitted in a list.");
+                }
+                acceptPayload(childType, visitor, depth + 1);
+            }
+            visitor.endList();
+            break;
+        case NBTConstants.TYPE_COMPOUND:
+            visitor.startCompound();
+            while (true) {
+                int childTagType = is.readByte() & 0xFF;
+                if (childTagType == NBTConstants.TYPE_END) {
+                    break;
+                }
+                acceptNamed(childTagType, is.readString(), visitor, depth + 1);
+            }
+            visitor.endCompound();
+            break;
+        case NBTConstants.TYPE_INT_ARRAY:
+            int[] ints = new int[is.readInt()];
+            is.readInts(ints);
+            visitor.intArrayValue(ints);
+            break;
+        case NBTConstants.TYPE_LONG_ARRAY:
+            long[] longs = new long[is.readInt()];
+            is.readLongs(longs);
+            visitor.longArrayValue(longs);
+            break;
+        default:
+            throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    /**
+     * Skips over the payload of a tag given the type, without decoding it.
+     *
+     * @param type the type
+     * @param depth the depth
+     * @throws IOException if an I/O error occurs.
+     */
+    private void skipPayload(int type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+
+        switch (type) {
+        case NBTConstants.TYPE_BYTE:
+            is.skip(1);
+            break;
+        case NBTConstants.TYPE_SHORT:
+            is.skip(2);
+            break;
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_FLOAT:
+            is.skip(4);
+            break;
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_DOUBLE:
+            is.skip(8);
+            break;
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            is.skip(is.readInt() & 0xFFFFFFFFL);
+            break;
+        case NBTConstants.TYPE_STRING:
+            is.skip(is.readUnsignedShort());
+            break;
+        case NBTConstants.TYPE_LIST:
+            int childType = is.readByte() & 0xFF;
+            int length = is.readInt();
+            int width = getPayloadWidth(childType);
+            if (width > 0) {
+                is.skip((long) width * length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    skipPayload(childType, depth + 1);
+                }
+            }
+            break;
+        case NBTConstants.TYPE_COMPOUND:
+            while (true) {
+                int childTagType = is.readByte() & 0xFF;
+                if (childTagType == NBTConstants.TYPE_END) {
+                    break;
+                }
+                is.skip(is.readUnsignedShort());
+                skipPayload(childTagType, depth + 1);
+            }
+            break;
+        case NBTConstants.TYPE_INT_ARRAY:
+            is.skip(4L * (is.readInt() & 0xFFFFFFFFL));
+            break;
+        case NBTConstants.TYPE_LONG_ARRAY:
+            is.skip(8L * (is.readInt() & 0xFFFFFFFFL));
+            break;
+        default:
+            throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    /**
+     * Gets the payload size of fixed width types.
+     *
+     * @param type the type
+     * @return the payload size in bytes, or 0 if it depends on the payload
+     */
+    private static int getPayloadWidth(int type) {
+        switch (type) {
+        case NBTConstants.TYPE_BYTE:
+            return 1;
+        case NBTConstants.TYPE_SHORT:
+            return 2;
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_FLOAT:
+            return 4;
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_DOUBLE:
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
     /**
      * Reads an NBT from the stream.
      *
@@ -90,16 +463,11 @@ public final class NBTInputStream implements Closeable {
         String name;
         if (type != NBTConstants.TYPE_END)
         {
-            int nameLength = is.readShort() & 0xFFFF;
-            byte[] nameBytes = new byte[nameLength];
-            is.readFully(nameBytes);
-            name = new String(nameBytes, NBTConstants.CHARSET);
+            name = is.readString();
         } else {
             name = "";
         }
 
-
-
         return new NamedTag(name, readTagPayload(type, depth));
     }
 
@@ -111,7 +479,7 @@ public final class NBTInputStream implements Closeable {
      * @return the tag
      * @throws IOException if an I/O error occurs.
      */
-    private Tag readTagPayload(int type, int depth) throws IOException {
+    Tag readTagPayload(int type, int depth) throws IOException {
         switch (type) {
         case NBTConstants.TYPE_END:
             if (depth == 0) {
@@ -135,17 +503,30 @@ public final class NBTInputStream implements Closeable {
         case NBTConstants.TYPE_BYTE_ARRAY:
             int length = is.readInt();
             byte[] bytes = new byte[length];
-            is.readFully(bytes);
+            is.readFully(bytes, 0, length);
             return new ByteArrayTag(bytes);
         case NBTConstants.TYPE_STRING:
-            length = is.readShort();
-            bytes = new byte[length];
-            is.readFully(bytes);
-            return new StringTag(new String(bytes, NBTConstants.CHARSET));
+            return new StringTag(is.readString());
         case NBTConstants.TYPE_LIST:
             int childType = is.readByte();
             length = is.readInt();
 
+            //numeric lists such as positions are kept in primitive arrays
+            switch (childType) {
+            case NBTConstants.TYPE_INT:
+                int[] ints = new int[length];
+                is.readInts(ints);
+                return new IntListTag(ints);
+            case NBTConstants.TYPE_FLOAT:
+                float[] floats = new float[length];
+                is.readFloats(floats);
+                return new FloatListTag(floats);
+            case NBTConstants.TYPE_DOUBLE:
+                double[] doubles = new double[length];
+                is.readDoubles(doubles);
+                return new DoubleListTag(doubles);
+            }
+
             List<Tag> tagList = new ArrayList<Tag>();
             for (int i = 0; i < length; ++i) {
                 Tag tag = readTagPayload(childType, depth + 1);
@@ -157,6 +538,10 @@ public final class NBTInputStream implements Closeable {
 
             return new ListTag(NBTUtils.getTypeClass(childType), tagList);
         case NBTConstants.TYPE_COMPOUND:
+            if (lazy) {
+                return new CompoundTag(readLazyCompound(depth + 1));
+            }
+
             Map<String, Tag> tagMap = new HashMap<String, Tag>();
             while (true) {
                 NamedTag namedTag = readNamedTag(depth + 1);
@@ -170,25 +555,56 @@ public final class NBTInputStream implements Closeable {
 
             return new CompoundTag(tagMap);
         case NBTConstants.TYPE_INT_ARRAY:
-            length = is.readInt();
-            int[] data = new int[length];
-            for (int i = 0; i < length; i++) {
-                data[i] = is.readInt();
-            }
+            int[] data = new int[is.readInt()];
+            is.readInts(data);
             return new IntArrayTag(data);
 
         case NBTConstants.TYPE_LONG_ARRAY:
-            length = is.readInt();
             long[] longData = new long[is.readInt()];
-            for (int i = 0; i < length; i++) {
-                longData[i] = is.readLong();
-            }
+            is.readLongs(longData);
             return new LongArrayTag(longData);
         default:
             throw new IOException("Invalid tag type: " + type + ".");
         }
     }
 
+    /**
+     * Walks over the children of a compound, only recording where they
+     * are.
+     *
+     * @param depth the depth of the children
+     * @return the lazily decoded children
+     * @throws IOException if an I/O error occurs.
+     */
+    private Map<String, Tag> readLazyCompound(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+        }
+
+        byte[] types = new byte[8];
+        int[] keyOffsets = new int[8];
+        int size = 0;
+        while (true) {
+            int childType = is.readByte() & 0xFF;
+            if (childType == NBTConstants.TYPE_END) {
+                break;
+            }
+
+            if (size == types.length) {
+                types = Arrays.copyOf(types, size * 2);
+                keyOffsets = Arrays.copyOf(keyOffsets, size * 2);
+            }
+            types[size] = (byte) childType;
+            keyOffsets[size] = is.position();
+            size++;
+
+            is.skip(is.readUnsignedShort());
+            skipPayload(childType, depth);
+        }
+
+        return new LazyTagMap(is.array(), is.order(), types, keyOffsets, size, depth);
+    }
+
     @Override
     public void close() throws IOException {
         is.close();
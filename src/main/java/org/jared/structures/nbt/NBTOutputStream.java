@@ -34,9 +34,11 @@
 package org.jared.structures.nbt;
 
 import java.io.Closeable;
-import java.io.DataOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.Map;
 
@@ -48,13 +50,18 @@ import java.util.Map;
  * <p>The NBT format was created by Markus Persson, and the specification may be
  * found at <a href="http://www.minecraft.net/docs/NBT.txt">
  * http://www.minecraft.net/docs/NBT.txt</a>.</p>
+ *
+ * <p>Output is buffered, so it only reaches the underlying stream on
+ * {@link #flush()} or {@link #close()}. Use {@link #sizeOf(Tag)} to allocate a
+ * buffer of the exact size and write into it with
+ * {@link #NBTOutputStream(ByteBuffer)}.</p>
  */
-public final class NBTOutputStream implements Closeable {
+public final class NBTOutputStream implements Closeable, Flushable {
 
     /**
-     * The output stream.
+     * The output.
      */
-    private final DataOutputStream os;
+    private final ByteBufferOutput os;
 
     /**
      * Creates a new {@code NBTOutputStream}, which will write data to the
@@ -66,7 +73,33 @@ public final class NBTOutputStream implements Closeable {
      *             if an I/O error occurs.
      */
     public NBTOutputStream(OutputStream os) throws IOException {
-        this.os = new DataOutputStream(os);
+        this(os, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Creates a new {@code NBTOutputStream}, which will write data to the
+     * specified underlying output stream using the given byte order.
+     *
+     * @param os
+     *            The output stream.
+     * @param order
+     *            The byte order, little endian for Bedrock edition data.
+     */
+    public NBTOutputStream(OutputStream os, ByteOrder order) {
+        this.os = new ByteBufferOutput(os, order);
+    }
+
+    /**
+     * Creates a new {@code NBTOutputStream}, which will write data straight
+     * into {@code target} from its position on, using its byte order. Writing
+     * more than the remaining space throws a
+     * {@link java.nio.BufferOverflowException}.
+     *
+     * @param target
+     *            The buffer to write into.
+     */
+    public NBTOutputStream(ByteBuffer target) {
+        this.os = new ByteBufferOutput(target);
     }
 
     /**
@@ -79,17 +112,14 @@ public final class NBTOutputStream implements Closeable {
      */
     public void writeNamedTag(String name, Tag tag) throws IOException {
 
-        int type = NBTUtils.getTypeCode(tag.getClass());
-        byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
-
-        os.writeByte(type);
-        os.writeShort(nameBytes.length);
-        os.write(nameBytes);
-
+        int type = tag.getTypeId();
         if (type == NBTConstants.TYPE_END) {
             throw new IOException("Named TAG_End not permitted.");
         }
 
+        os.writeByte(type);
+        os.writeString(name);
+
         writeTagPayload(tag);
     }
 
@@ -102,7 +132,7 @@ public final class NBTOutputStream implements Closeable {
      *             if an I/O error occurs.
      */
     private void writeTagPayload(Tag tag) throws IOException {
-        int type = NBTUtils.getTypeCode(tag.getClass());
+        int type = tag.getTypeId();
         switch (type) {
         case NBTConstants.TYPE_END:
             writeEndTagPayload((EndTag) tag);
@@ -171,7 +201,7 @@ public final class NBTOutputStream implements Closeable {
     private void writeByteArrayTagPayload(ByteArrayTag tag) throws IOException {
         byte[] bytes = tag.getValue();
         os.writeInt(bytes.length);
-        os.write(bytes);
+        os.write(bytes, 0, bytes.length);
     }
 
     /**
@@ -198,6 +228,28 @@ public final class NBTOutputStream implements Closeable {
      *             if an I/O error occurs.
      */
     private void writeListTagPayload(ListTag tag) throws IOException {
+        if (tag instanceof IntListTag) {
+            int[] values = ((IntListTag) tag).getIntValues();
+            os.writeByte(NBTConstants.TYPE_INT);
+            os.writeInt(values.length);
+            os.writeInts(values);
+            return;
+        }
+        if (tag instanceof FloatListTag) {
+            float[] values = ((FloatListTag) tag).getFloatValues();
+            os.writeByte(NBTConstants.TYPE_FLOAT);
+            os.writeInt(values.length);
+            os.writeFloats(values);
+            return;
+        }
+        if (tag instanceof DoubleListTag) {
+            double[] values = ((DoubleListTag) tag).getDoubleValues();
+            os.writeByte(NBTConstants.TYPE_DOUBLE);
+            os.writeInt(values.length);
+            os.writeDoubles(values);
+            return;
+        }
+
         Class<? extends Tag> clazz = tag.getType();
         List<Tag> tags = tag.getValue();
         int size = tags.size();
@@ -218,9 +270,7 @@ public final class NBTOutputStream implements Closeable {
      *             if an I/O error occurs.
      */
     private void writeStringTagPayload(StringTag tag) throws IOException {
-        byte[] bytes = tag.getValue().getBytes(NBTConstants.CHARSET);
-        os.writeShort(bytes.length);
-        os.write(bytes);
+        os.writeString(tag.getValue());
     }
 
     /**
@@ -295,17 +345,119 @@ public final class NBTOutputStream implements Closeable {
     private void writeIntArrayTagPayload(IntArrayTag tag) throws IOException {
         int[] data = tag.getValue();
         os.writeInt(data.length);
-        for (int aData : data) {
-            os.writeInt(aData);
-        }
+        os.writeInts(data);
     }
 
     private void writeLongArrayTagPayload(LongArrayTag tag) throws IOException {
         long[] data = tag.getValue();
-        os.writeLong(data.length);
-        for (long aData : data) {
-            os.writeLong(aData);
+        os.writeInt(data.length);
+        os.writeLongs(data);
+    }
+
+    /**
+     * Gets the exact number of bytes {@code writeNamedTag("", tag)} writes.
+     *
+     * @param tag
+     *            The tag.
+     * @return the size in bytes
+     */
+    public static int sizeOf(Tag tag) {
+        return sizeOf("", tag);
+    }
+
+    /**
+     * Gets the exact number of bytes {@code writeNamedTag(name, tag)} writes.
+     *
+     * @param name
+     *            The name of the tag.
+     * @param tag
+     *            The tag.
+     * @return the size in bytes
+     */
+    public static int sizeOf(String name, Tag tag) {
+        return 1 + 2 + sizeOfString(name) + sizeOfPayload(tag);
+    }
+
+    private static int sizeOfPayload(Tag tag) {
+        switch (tag.getTypeId()) {
+        case NBTConstants.TYPE_END:
+            return 0;
+        case NBTConstants.TYPE_BYTE:
+            return 1;
+        case NBTConstants.TYPE_SHORT:
+            return 2;
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_FLOAT:
+            return 4;
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_DOUBLE:
+            return 8;
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            return 4 + ((ByteArrayTag) tag).getValue().length;
+        case NBTConstants.TYPE_STRING:
+            return 2 + sizeOfString(((StringTag) tag).getValue());
+        case NBTConstants.TYPE_LIST:
+            return sizeOfList((ListTag) tag);
+        case NBTConstants.TYPE_COMPOUND:
+            int size = 1;
+            for (Map.Entry<String, Tag> entry : ((CompoundTag) tag).getValue().entrySet()) {
+                size += sizeOf(entry.getKey(), entry.getValue());
+            }
+            return size;
+        case NBTConstants.TYPE_INT_ARRAY:
+            return 4 + ((IntArrayTag) tag).getValue().length * 4;
+        case NBTConstants.TYPE_LONG_ARRAY:
+            return 4 + ((LongArrayTag) tag).getValue().length * 8;
+        default:
+            throw new IllegalArgumentException("Invalid tag type: " + tag.getTypeId() + ".");
+        }
+    }
+
+    private static int sizeOfList(ListTag tag) {
+        if (tag instanceof IntListTag) {
+            return 5 + ((IntListTag) tag).getIntValues().length * 4;
+        }
+        if (tag instanceof FloatListTag) {
+            return 5 + ((FloatListTag) tag).getFloatValues().length * 4;
+        }
+        if (tag instanceof DoubleListTag) {
+            return 5 + ((DoubleListTag) tag).getDoubleValues().length * 8;
+        }
+
+        int size = 5;
+        for (Tag element : tag.getValue()) {
+            size += sizeOfPayload(element);
         }
+        return size;
+    }
+
+    /**
+     * Gets the length of a string in UTF-8 without encoding it. Unpaired
+     * surrogates count as one byte, as they are replaced with {@code ?}.
+     */
+    static int sizeOfString(String value) {
+        int length = value.length();
+        int size = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                size += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                size += 2;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        os.flush();
     }
 
     @Override
@@ -0,0 +1,125 @@
+package org.jared.structures.nbt;
+
+import java.nio.ByteOrder;
+
+/**
+ * Receives the contents of an NBT stream as a sequence of events, without the stream being turned into a tree of
+ * {@link Tag} objects first. See {@link NBTInputStream#accept(NBTVisitor)}.
+ *
+ * <p>Every named tag (the root, and each entry of a compound) is announced through {@link #key(String, int)}, whose
+ * result decides how its value is delivered. Values of lists are always visited. All methods do nothing by
+ * default.</p>
+ */
+public interface NBTVisitor
+{
+    enum Action
+    {
+        /**
+         * Deliver the value as events.
+         */
+        VISIT,
+        /**
+         * Skip over the value without decoding it.
+         */
+        SKIP,
+        /**
+         * Decode the value into a tag and deliver it through {@link NBTVisitor#tagValue(Tag)}.
+         */
+        READ_TAG,
+        /**
+         * Copy the value's payload without decoding it and deliver it through
+         * {@link NBTVisitor#rawValue(int, byte[])}.
+         */
+        READ_RAW
+    }
+
+    /**
+     * Called before the value of a named tag.
+     *
+     * @param name the name of the tag
+     * @param type the type id of the tag, see {@link NBTConstants}
+     * @return how the value should be delivered
+     */
+    default Action key(String name, int type)
+    {
+        return Action.VISIT;
+    }
+
+    default void startCompound()
+    {
+    }
+
+    default void endCompound()
+    {
+    }
+
+    /**
+     * @param childType the type id of the elements
+     * @param length the number of elements that follow
+     */
+    default void startList(int childType, int length)
+    {
+    }
+
+    default void endList()
+    {
+    }
+
+    default void byteValue(byte value)
+    {
+    }
+
+    default void shortValue(short value)
+    {
+    }
+
+    default void intValue(int value)
+    {
+    }
+
+    default void longValue(long value)
+    {
+    }
+
+    default void floatValue(float value)
+    {
+    }
+
+    default void doubleValue(double value)
+    {
+    }
+
+    default void stringValue(String value)
+    {
+    }
+
+    default void byteArrayValue(byte[] value)
+    {
+    }
+
+    default void intArrayValue(int[] value)
+    {
+    }
+
+    default void longArrayValue(long[] value)
+    {
+    }
+
+    /**
+     * Receives a value for which {@link #key(String, int)} returned {@link Action#READ_TAG}.
+     */
+    default void tagValue(Tag tag)
+    {
+    }
+
+    /**
+     * Receives a value for which {@link #key(String, int)} returned {@link Action#READ_RAW}. The payload is in the
+     * byte order of the stream and can be decoded with {@link NBTInputStream#readPayload(int, byte[], ByteOrder)}.
+     *
+     * @param type the type id of the value
+     * @param payload the encoded value, without its type and name
+     */
+    default void rawValue(int type, byte[] payload)
+    {
+    }
+}
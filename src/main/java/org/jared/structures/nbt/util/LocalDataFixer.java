@@ -11,11 +11,23 @@ import java.util.function.BiFunction;
 
 public class LocalDataFixer
 {
+    public static final int DEFAULT_BOOTSTRAP_THREADS = Integer.getInteger("org.jared.structures.fixerBootstrapThreads", Integer.getInteger("net.minecraft.server.v1_13_R2.DataConverterRegistry.bootstrapThreads", Math.min(Runtime.getRuntime().availableProcessors(), 2)));
+
     private DataFixer attachedDataFixer;
 
     public LocalDataFixer()
     {
-        this.attachedDataFixer = createDataFixer();
+        this(DEFAULT_BOOTSTRAP_THREADS);
+    }
+
+    /**
+     * Builds the fixer, which registers every schema and fixer up to 1.13.2 and takes a few seconds.
+     *
+     * @param bootstrapThreads the parallelism used to build the schemas
+     */
+    public LocalDataFixer(int bootstrapThreads)
+    {
+        this.attachedDataFixer = createDataFixer(Math.max(1, bootstrapThreads));
     }
 
     public DataFixer getAttachedDataFixer()
@@ -23,11 +35,11 @@ public class LocalDataFixer
         return attachedDataFixer;
     }
 
-    private DataFixer createDataFixer()
+    private DataFixer createDataFixer(int bootstrapThreads)
     {
         DataFixerBuilder dataFixerBuilder = new DataFixerBuilder(1631);
         populateDataFixer(dataFixerBuilder);
-        ForkJoinPool pool = new ForkJoinPool(Integer.getInteger("net.minecraft.server.v1_13_R2.DataConverterRegistry.bootstrapThreads", Math.min(Runtime.getRuntime().availableProcessors(), 2)));
+        ForkJoinPool pool = new ForkJoinPool(bootstrapThreads);
         DataFixer fixer = dataFixerBuilder.build(pool);
         pool.shutdown();
         return fixer;
@@ -0,0 +1,55 @@
+package org.jared.structures.nbt.util;
+
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.NBTInputStream;
+import org.jared.structures.nbt.NBTOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+public class NBTFiles
+{
+    public static CompoundTag read(Path path) throws IOException
+    {
+        try (NBTInputStream inputStream = new NBTInputStream(Files.newInputStream(path), true))
+        {
+            return (CompoundTag) inputStream.readNamedTag().getTag();
+        }
+    }
+
+    /**
+     * Writes a compressed NBT file to a temporary file next to the target first and then moves it in place, so
+     * readers never see a partially written file.
+     */
+    public static void write(Path path, CompoundTag data) throws IOException
+    {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+        try
+        {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp)); NBTOutputStream outputStream = new NBTOutputStream(out))
+            {
+                outputStream.writeNamedTag("", data);
+            }
+
+            try
+            {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -1,25 +1,97 @@
 package org.jared.structures.nbt.util;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.mojang.datafixers.DataFixTypes;
+import com.mojang.datafixers.DataFixer;
 import com.mojang.datafixers.Dynamic;
 import net.minecraft.server.v1_13_R2.DynamicOpsNBT;
 import net.minecraft.server.v1_13_R2.NBTBase;
 import org.jared.structures.nbt.*;
 
 import javax.xml.stream.Location;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class NBTUpdater
 {
-    private static final LocalDataFixer LOCAL_DATA_FIXER = new LocalDataFixer();
+    /**
+     * The data version of 1.13.2, which structures are upgraded to.
+     */
+    public static final int TARGET_DATA_VERSION = 1631;
 
+    /**
+     * Runs the fixer on copies in NMS tags instead of on our own tags, in case a fixer turns out to depend on them.
+     */
+    private static final boolean NMS_OPS = Boolean.getBoolean("org.jared.structures.nmsDataFixerOps");
+
+    private static final MethodHandle LIST_GETTER = findGetter(net.minecraft.server.v1_13_R2.NBTTagList.class, "list");
+    private static final MethodHandle MAP_GETTER = findGetter(net.minecraft.server.v1_13_R2.NBTTagCompound.class, "map");
+
+    private static volatile UpgradeCache upgradeCache;
+    private static final AtomicReference<CompletableFuture<LocalDataFixer>> LOCAL_DATA_FIXER = new AtomicReference<>();
+
+    /**
+     * Upgrades structure data to {@link #TARGET_DATA_VERSION}. Data that is already current is returned as is, without
+     * the DataFixer being built or the tree being converted.
+     *
+     * @return the upgraded data, with its DataVersion set to the target
+     */
     public static CompoundTag updateData(CompoundTag data)
     {
-        net.minecraft.server.v1_13_R2.NBTTagCompound nmsData = (net.minecraft.server.v1_13_R2.NBTTagCompound) toNMS(data);
-        nmsData = (net.minecraft.server.v1_13_R2.NBTTagCompound) LOCAL_DATA_FIXER.getAttachedDataFixer().update(DataFixTypes.STRUCTURE, new Dynamic<>(DynamicOpsNBT.a, nmsData), data.getInt("DataVersion"), 1631).getValue();
-        return (CompoundTag) fromNMS(nmsData);
+        return updateData(data, NMS_OPS);
+    }
+
+    /**
+     * @param nmsOps whether to run the fixer on NMS tags, see {@link #NMS_OPS}
+     */
+    static CompoundTag updateData(CompoundTag data, boolean nmsOps)
+    {
+        int dataVersion = data.getInt("DataVersion");
+        if (!needsUpdate(dataVersion))
+            return data;
+
+        DataFixer dataFixer = getLocalDataFixer().getAttachedDataFixer();
+        CompoundTag updated;
+        if (nmsOps)
+        {
+            net.minecraft.server.v1_13_R2.NBTTagCompound nmsData = (net.minecraft.server.v1_13_R2.NBTTagCompound) toNMS(data);
+            nmsData = (net.minecraft.server.v1_13_R2.NBTTagCompound) dataFixer.update(DataFixTypes.STRUCTURE, new Dynamic<>(DynamicOpsNBT.a, nmsData), dataVersion, TARGET_DATA_VERSION).getValue();
+            updated = (CompoundTag) fromNMS(nmsData);
+        }
+        else
+        {
+            updated = (CompoundTag) dataFixer.update(DataFixTypes.STRUCTURE, new Dynamic<>(TagDynamicOps.INSTANCE, (Tag) data), dataVersion, TARGET_DATA_VERSION).getValue();
+        }
+
+        Map<String, Tag> value = Maps.newHashMap(updated.getValue());
+        value.put("DataVersion", new IntTag(TARGET_DATA_VERSION));
+        return new CompoundTag(value);
+    }
+
+    public static boolean needsUpdate(int dataVersion)
+    {
+        return dataVersion < TARGET_DATA_VERSION;
+    }
+
+    /**
+     * @return the cache upgraded structure files are kept in, or null if upgrades are not cached
+     */
+    public static UpgradeCache getUpgradeCache()
+    {
+        return upgradeCache;
+    }
+
+    public static void setUpgradeCache(UpgradeCache upgradeCache)
+    {
+        NBTUpdater.upgradeCache = upgradeCache;
     }
 
     //TODO update "toNMS" and "fromNMS" to OOP principles, might be able to use the "read" function found in all children of NBTBase by creating an extension of "DataInput"
@@ -96,12 +168,15 @@ public class NBTUpdater
             case 8:
                 return new StringTag(((net.minecraft.server.v1_13_R2.NBTTagString) base).asString());
             case 9:
-                ListTag tagList = new ListTag();
-                for (NBTBase nbtBase : getList((net.minecraft.server.v1_13_R2.NBTTagList) base))
+                List<NBTBase> nbtList = getList((net.minecraft.server.v1_13_R2.NBTTagList) base);
+                List<Tag> tagList = Lists.newArrayListWithCapacity(nbtList.size());
+                for (NBTBase nbtBase : nbtList)
                 {
-                    tagList.getValue().add(fromNMS(nbtBase));
+                    tagList.add(fromNMS(nbtBase));
                 }
-                return tagList;
+                //the element type is written from the first element, an empty list is a list of end tags like in vanilla
+                int elementType = nbtList.isEmpty() ? NBTConstants.TYPE_END : nbtList.get(0).getTypeId();
+                return new ListTag(NBTUtils.getTypeClass(elementType), tagList);
             case 10:
                 CompoundTag tagCompound = new CompoundTag();
                 for (Map.Entry<String, NBTBase> nbtBaseEntry : getTagMap((net.minecraft.server.v1_13_R2.NBTTagCompound) base).entrySet())
@@ -228,37 +303,107 @@ public class NBTUpdater
         }
         */
 
-    private static List<NBTBase> getList(net.minecraft.server.v1_13_R2.NBTTagList tagList)
+    /**
+     * Starts building the DataFixer on {@code executor}, unless it is already being built. Until this is called the
+     * fixer is built by the first upgrade that needs it, on that thread. If building fails, the failed future is
+     * dropped, so that the next call tries again.
+     *
+     * @param executor the executor to build the fixer on
+     * @param bootstrapThreads the parallelism used to build the fixer's schemas
+     * @return a future completing once the fixer is ready
+     */
+    public static CompletableFuture<LocalDataFixer> bootstrap(Executor executor, int bootstrapThreads)
+    {
+        while (true)
+        {
+            CompletableFuture<LocalDataFixer> future = LOCAL_DATA_FIXER.get();
+            if (future != null)
+                return future;
+
+            CompletableFuture<LocalDataFixer> bootstrap = new CompletableFuture<>();
+            if (!LOCAL_DATA_FIXER.compareAndSet(null, bootstrap))
+                continue;
+
+            Runnable build = () ->
+            {
+                try
+                {
+                    bootstrap.complete(new LocalDataFixer(bootstrapThreads));
+                }
+                catch (Throwable t)
+                {
+                    //cleared before completing, so callbacks of the failed future can already start over
+                    LOCAL_DATA_FIXER.compareAndSet(bootstrap, null);
+                    bootstrap.completeExceptionally(t);
+                }
+            };
+
+            try
+            {
+                executor.execute(build);
+            }
+            catch (RejectedExecutionException e)
+            {
+                LOCAL_DATA_FIXER.compareAndSet(bootstrap, null);
+                bootstrap.completeExceptionally(e);
+            }
+
+            return bootstrap;
+        }
+    }
+
+    /**
+     * @return whether the DataFixer has been built, files that are current never need it
+     */
+    public static boolean isDataFixerReady()
+    {
+        CompletableFuture<LocalDataFixer> future = LOCAL_DATA_FIXER.get();
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    private static LocalDataFixer getLocalDataFixer()
+    {
+        return bootstrap(Runnable::run, LocalDataFixer.DEFAULT_BOOTSTRAP_THREADS).join();
+    }
+
+    private static MethodHandle findGetter(Class<?> owner, String name)
     {
         try
         {
-            Field listField = net.minecraft.server.v1_13_R2.NBTTagList.class.getDeclaredField("list");
-            listField.setAccessible(true);
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
 
-            return (List<NBTBase>) listField.get(tagList);
+            return MethodHandles.lookup().unreflectGetter(field);
         }
-        catch (Exception e)
+        catch (ReflectiveOperationException e)
         {
-            e.printStackTrace();
+            throw new IllegalStateException("Could not access " + owner.getName() + "." + name, e);
         }
+    }
 
-        return null;
+    @SuppressWarnings("unchecked")
+    private static List<NBTBase> getList(net.minecraft.server.v1_13_R2.NBTTagList tagList)
+    {
+        try
+        {
+            return (List<NBTBase>) (List<?>) LIST_GETTER.invokeExact(tagList);
+        }
+        catch (Throwable t)
+        {
+            throw new IllegalStateException(t);
+        }
     }
 
+    @SuppressWarnings("unchecked")
     private static Map<String, NBTBase> getTagMap(net.minecraft.server.v1_13_R2.NBTTagCompound tagCompound)
     {
         try
         {
-            Field mapField = net.minecraft.server.v1_13_R2.NBTTagCompound.class.getDeclaredField("map");
-            mapField.setAccessible(true);
-
-            return (Map<String, NBTBase>) mapField.get(tagCompound);
+            return (Map<String, NBTBase>) (Map<?, ?>) MAP_GETTER.invokeExact(tagCompound);
         }
-        catch (Exception e)
+        catch (Throwable t)
         {
-            e.printStackTrace();
+            throw new IllegalStateException(t);
         }
-
-        return null;
     }
 }
@@ -0,0 +1,323 @@
+package org.jared.structures.nbt.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.mojang.datafixers.DSL;
+import com.mojang.datafixers.types.DynamicOps;
+import com.mojang.datafixers.types.Type;
+import org.jared.structures.nbt.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Lets the DataFixer work on our own tags, so data does not have to be copied to NMS tags and back for an upgrade.
+ * Mirrors the behaviour of NMS' DynamicOpsNBT, including turning lists of bytes, ints and longs into arrays. Tags are
+ * never modified; every change creates a new tag.
+ */
+public final class TagDynamicOps implements DynamicOps<Tag>
+{
+    public static final TagDynamicOps INSTANCE = new TagDynamicOps();
+
+    private TagDynamicOps()
+    {
+    }
+
+    @Override
+    public Tag empty()
+    {
+        return new EndTag();
+    }
+
+    @Override
+    public Type<?> getType(Tag input)
+    {
+        switch (input.getTypeId())
+        {
+            case NBTConstants.TYPE_END:
+                return DSL.nilType();
+            case NBTConstants.TYPE_BYTE:
+                return DSL.byteType();
+            case NBTConstants.TYPE_SHORT:
+                return DSL.shortType();
+            case NBTConstants.TYPE_INT:
+                return DSL.intType();
+            case NBTConstants.TYPE_LONG:
+                return DSL.longType();
+            case NBTConstants.TYPE_FLOAT:
+                return DSL.floatType();
+            case NBTConstants.TYPE_DOUBLE:
+                return DSL.doubleType();
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                return DSL.list(DSL.byteType());
+            case NBTConstants.TYPE_STRING:
+                return DSL.string();
+            case NBTConstants.TYPE_LIST:
+                return DSL.list(DSL.remainderType());
+            case NBTConstants.TYPE_COMPOUND:
+                return DSL.compoundList(DSL.remainderType(), DSL.remainderType());
+            case NBTConstants.TYPE_INT_ARRAY:
+                return DSL.list(DSL.intType());
+            case NBTConstants.TYPE_LONG_ARRAY:
+                return DSL.list(DSL.longType());
+            default:
+                return DSL.remainderType();
+        }
+    }
+
+    @Override
+    public Optional<Number> getNumberValue(Tag input)
+    {
+        Object value = input.getValue();
+        return value instanceof Number ? Optional.of((Number) value) : Optional.empty();
+    }
+
+    @Override
+    public Tag createNumeric(Number i)
+    {
+        return new DoubleTag(i.doubleValue());
+    }
+
+    @Override
+    public Tag createByte(byte value)
+    {
+        return new ByteTag(value);
+    }
+
+    @Override
+    public Tag createShort(short value)
+    {
+        return new ShortTag(value);
+    }
+
+    @Override
+    public Tag createInt(int value)
+    {
+        return new IntTag(value);
+    }
+
+    @Override
+    public Tag createLong(long value)
+    {
+        return new LongTag(value);
+    }
+
+    @Override
+    public Tag createFloat(float value)
+    {
+        return new FloatTag(value);
+    }
+
+    @Override
+    public Tag createDouble(double value)
+    {
+        return new DoubleTag(value);
+    }
+
+    @Override
+    public Optional<String> getStringValue(Tag input)
+    {
+        return input instanceof StringTag ? Optional.of(((StringTag) input).getValue()) : Optional.empty();
+    }
+
+    @Override
+    public Tag createString(String value)
+    {
+        return new StringTag(value);
+    }
+
+    @Override
+    public Tag mergeInto(Tag input, Tag value)
+    {
+        if (input instanceof EndTag)
+            return createList(Stream.of(value));
+
+        if (!(input instanceof ListTag))
+            return input;
+
+        List<Tag> values = Lists.newArrayList(((ListTag) input).getValue());
+        values.add(value);
+        return createList(values.stream());
+    }
+
+    @Override
+    public Tag mergeInto(Tag input, Tag key, Tag value)
+    {
+        if (!(input instanceof CompoundTag) && !(input instanceof EndTag))
+            return input;
+
+        Map<String, Tag> values = input instanceof CompoundTag ? Maps.newHashMap(((CompoundTag) input).getValue()) : Maps.newHashMap();
+        values.put(key.asString(), value);
+        return new CompoundTag(values);
+    }
+
+    @Override
+    public Tag merge(Tag first, Tag second)
+    {
+        if (first instanceof EndTag)
+            return second;
+
+        if (second instanceof EndTag)
+            return first;
+
+        if (first instanceof CompoundTag && second instanceof CompoundTag)
+        {
+            Map<String, Tag> values = Maps.newHashMap(((CompoundTag) first).getValue());
+            values.putAll(((CompoundTag) second).getValue());
+            return new CompoundTag(values);
+        }
+
+        Optional<Stream<Tag>> firstStream = getStream(first);
+        Optional<Stream<Tag>> secondStream = getStream(second);
+        if (firstStream.isPresent() && secondStream.isPresent())
+            return createList(Stream.concat(firstStream.get(), secondStream.get()));
+
+        throw new IllegalArgumentException("Could not merge " + first + " and " + second);
+    }
+
+    @Override
+    public Optional<Map<Tag, Tag>> getMapValues(Tag input)
+    {
+        if (!(input instanceof CompoundTag))
+            return Optional.empty();
+
+        Map<String, Tag> values = ((CompoundTag) input).getValue();
+        Map<Tag, Tag> map = Maps.newHashMapWithExpectedSize(values.size());
+        for (Map.Entry<String, Tag> entry : values.entrySet())
+        {
+            map.put(new StringTag(entry.getKey()), entry.getValue());
+        }
+
+        return Optional.of(map);
+    }
+
+    @Override
+    public Tag createMap(Map<Tag, Tag> map)
+    {
+        Map<String, Tag> values = Maps.newHashMapWithExpectedSize(map.size());
+        for (Map.Entry<Tag, Tag> entry : map.entrySet())
+        {
+            values.put(entry.getKey().asString(), entry.getValue());
+        }
+
+        return new CompoundTag(values);
+    }
+
+    @Override
+    public Optional<Stream<Tag>> getStream(Tag input)
+    {
+        if (input instanceof ListTag)
+            return Optional.of(((ListTag) input).getValue().stream());
+
+        if (input instanceof ByteArrayTag)
+        {
+            byte[] bytes = ((ByteArrayTag) input).getValue();
+            return Optional.of(IntStream.range(0, bytes.length).mapToObj(i -> new ByteTag(bytes[i])));
+        }
+
+        if (input instanceof IntArrayTag)
+            return Optional.of(Arrays.stream(((IntArrayTag) input).getValue()).mapToObj(IntTag::new));
+
+        if (input instanceof LongArrayTag)
+            return Optional.of(Arrays.stream(((LongArrayTag) input).getValue()).mapToObj(LongTag::new));
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Tag createList(Stream<Tag> input)
+    {
+        List<Tag> values = input.collect(Collectors.toList());
+        if (values.isEmpty())
+            return new ListTag(EndTag.class, values);
+
+        Tag first = values.get(0);
+        if (first instanceof ByteTag)
+        {
+            byte[] bytes = new byte[values.size()];
+            for (int i = 0; i < bytes.length; i++)
+            {
+                bytes[i] = ((Number) values.get(i).getValue()).byteValue();
+            }
+            return new ByteArrayTag(bytes);
+        }
+
+        if (first instanceof IntTag)
+            return new IntArrayTag(values.stream().mapToInt(tag -> ((Number) tag.getValue()).intValue()).toArray());
+
+        if (first instanceof LongTag)
+            return new LongArrayTag(values.stream().mapToLong(tag -> ((Number) tag.getValue()).longValue()).toArray());
+
+        //lists only hold a single type, like NBTTagList the rest is dropped
+        List<Tag> sameType = values.stream().filter(tag -> tag.getTypeId() == first.getTypeId()).collect(Collectors.toList());
+        return new ListTag(NBTUtils.getTypeClass(first.getTypeId()), sameType);
+    }
+
+    @Override
+    public Optional<ByteBuffer> getByteBuffer(Tag input)
+    {
+        if (input instanceof ByteArrayTag)
+            return Optional.of(ByteBuffer.wrap(((ByteArrayTag) input).getValue()));
+
+        return DynamicOps.super.getByteBuffer(input);
+    }
+
+    @Override
+    public Tag createByteList(ByteBuffer input)
+    {
+        byte[] bytes = new byte[input.remaining()];
+        input.duplicate().get(bytes);
+        return new ByteArrayTag(bytes);
+    }
+
+    @Override
+    public Optional<IntStream> getIntStream(Tag input)
+    {
+        if (input instanceof IntArrayTag)
+            return Optional.of(Arrays.stream(((IntArrayTag) input).getValue()));
+
+        return DynamicOps.super.getIntStream(input);
+    }
+
+    @Override
+    public Tag createIntList(IntStream input)
+    {
+        return new IntArrayTag(input.toArray());
+    }
+
+    @Override
+    public Optional<LongStream> getLongStream(Tag input)
+    {
+        if (input instanceof LongArrayTag)
+            return Optional.of(Arrays.stream(((LongArrayTag) input).getValue()));
+
+        return DynamicOps.super.getLongStream(input);
+    }
+
+    @Override
+    public Tag createLongList(LongStream input)
+    {
+        return new LongArrayTag(input.toArray());
+    }
+
+    @Override
+    public Tag remove(Tag input, String key)
+    {
+        if (!(input instanceof CompoundTag) || !((CompoundTag) input).containsKey(key))
+            return input;
+
+        Map<String, Tag> values = Maps.newHashMap(((CompoundTag) input).getValue());
+        values.remove(key);
+        return new CompoundTag(values);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Tag";
+    }
+}
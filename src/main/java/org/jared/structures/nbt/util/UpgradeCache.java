@@ -0,0 +1,91 @@
+package org.jared.structures.nbt.util;
+
+import org.jared.structures.nbt.CompoundTag;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the DataFixer output of legacy structure files on disk, keyed by a hash of the file's content and its data
+ * version, so that each file is only upgraded once per deployment. Entries are written atomically; an entry that can
+ * not be read is dropped and upgraded again.
+ */
+public class UpgradeCache
+{
+    private final Path directory;
+    private final Logger logger;
+
+    public UpgradeCache(Path directory, Logger logger) throws IOException
+    {
+        this.directory = Files.createDirectories(directory);
+        this.logger = logger;
+    }
+
+    /**
+     * @param contentHash the hash of the raw file
+     * @param dataVersion the data version the file was written with
+     * @return the upgraded data, or null if it has not been cached
+     */
+    public CompoundTag get(byte[] contentHash, int dataVersion)
+    {
+        Path path = getPath(contentHash, dataVersion);
+        if (!Files.isRegularFile(path))
+            return null;
+
+        try
+        {
+            return NBTFiles.read(path);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            logger.log(Level.WARNING, "Dropping unreadable upgrade cache entry " + path, e);
+            delete(path);
+            return null;
+        }
+    }
+
+    public void put(byte[] contentHash, int dataVersion, CompoundTag upgraded)
+    {
+        Path path = getPath(contentHash, dataVersion);
+
+        try
+        {
+            NBTFiles.write(path, upgraded);
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not write upgrade cache entry " + path, e);
+        }
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    private Path getPath(byte[] contentHash, int dataVersion)
+    {
+        StringBuilder name = new StringBuilder(contentHash.length * 2 + 16);
+        for (byte b : contentHash)
+        {
+            name.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return directory.resolve(name.append('-').append(dataVersion).append('-').append(NBTUpdater.TARGET_DATA_VERSION).append(".nbt").toString());
+    }
+
+    private void delete(Path path)
+    {
+        try
+        {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e)
+        {
+            logger.log(Level.WARNING, "Could not delete upgrade cache entry " + path, e);
+        }
+    }
+}
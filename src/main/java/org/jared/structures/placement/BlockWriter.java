@@ -0,0 +1,61 @@
+package org.jared.structures.placement;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.jared.structures.nbt.CompoundTag;
+
+/**
+ * How a {@link PlacementTask} puts blocks into the world, and reads what they replace when an undo snapshot is taken.
+ * Blocks arrive chunk by chunk, so a writer can defer work such as relighting or resending a chunk until
+ * {@link #finishChunk(World, int, int)}.
+ *
+ * <p>Writers are only used on the server thread.</p>
+ */
+public interface BlockWriter
+{
+    /**
+     * @param applyPhysics whether the block and its neighbours are updated right away; if not, the placement calls
+     *                     {@link #applyPhysics(World, int, int, int)} for the block once everything is placed
+     */
+    void setBlockData(World world, int x, int y, int z, BlockData data, boolean applyPhysics);
+
+    /**
+     * Notifies the neighbours of a block as if it had just been placed, so that e.g. sand falls, fluids flow and
+     * redstone updates.
+     */
+    void applyPhysics(World world, int x, int y, int z);
+
+    /**
+     * @return whether {@link #applyPhysics(World, int, int, int)} is supported, which
+     * {@link PlacementOptions#isDeferPhysics()} needs
+     */
+    default boolean canDeferPhysics()
+    {
+        return true;
+    }
+
+    /**
+     * Loads stored data into the block entity of a block that has already been placed, e.g. the items of a chest or
+     * the text of a sign. Blocks without a block entity are left alone, and writers that cannot load the data may skip
+     * it.
+     */
+    void setBlockEntity(World world, int x, int y, int z, CompoundTag data);
+
+    default BlockData getBlockData(World world, int x, int y, int z)
+    {
+        return world.getBlockAt(x, y, z).getBlockData();
+    }
+
+    /**
+     * @return the data of the block's block entity in the form {@link #setBlockEntity(World, int, int, int,
+     * CompoundTag)} takes, or {@code null} if the block has none or the writer cannot read it
+     */
+    CompoundTag getBlockEntity(World world, int x, int y, int z);
+
+    /**
+     * Called once a placement has written all of its blocks in a chunk.
+     */
+    default void finishChunk(World world, int chunkX, int chunkZ)
+    {
+    }
+}
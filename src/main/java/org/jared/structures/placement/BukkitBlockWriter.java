@@ -0,0 +1,66 @@
+package org.jared.structures.placement;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.jared.structures.nbt.CompoundTag;
+
+/**
+ * Writes every block through {@link org.bukkit.block.Block#setBlockData(BlockData, boolean)}, with lighting and, unless
+ * deferred, physics and neighbour updates for each block. Only the Bukkit API is used, so it works on any server
+ * version, but block entity data is neither loaded nor captured, and physics cannot be deferred.
+ */
+public class BukkitBlockWriter implements BlockWriter
+{
+    public static final BukkitBlockWriter INSTANCE = new BukkitBlockWriter();
+
+    private boolean warnedBlockEntities;
+
+    @Override
+    public void setBlockData(World world, int x, int y, int z, BlockData data, boolean applyPhysics)
+    {
+        world.getBlockAt(x, y, z).setBlockData(data, applyPhysics);
+    }
+
+    /**
+     * Bukkit only updates neighbours when a block changes, and removing a block to change it destroys its block entity
+     * and may drop its contents, e.g. the record of a jukebox. Deferred physics is therefore not supported;
+     * {@link NMSBlockWriter} updates the neighbours directly.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void applyPhysics(World world, int x, int y, int z)
+    {
+        throw new UnsupportedOperationException("Deferred physics needs " + NMSBlockWriter.class.getSimpleName());
+    }
+
+    @Override
+    public boolean canDeferPhysics()
+    {
+        return false;
+    }
+
+    /**
+     * Bukkit block states cannot take raw NBT, so the data is skipped, with a warning the first time.
+     * {@link NMSBlockWriter} loads it.
+     */
+    @Override
+    public void setBlockEntity(World world, int x, int y, int z, CompoundTag data)
+    {
+        if (!warnedBlockEntities)
+        {
+            warnedBlockEntities = true;
+            Bukkit.getLogger().warning("Block entity data is not supported on this server version, chests, signs and other block entities are placed empty");
+        }
+    }
+
+    /**
+     * @return always {@code null}, the Bukkit API cannot save block entities as NBT; {@link NMSBlockWriter} can
+     */
+    @Override
+    public CompoundTag getBlockEntity(World world, int x, int y, int z)
+    {
+        return null;
+    }
+}
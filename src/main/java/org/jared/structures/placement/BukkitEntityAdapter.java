@@ -0,0 +1,39 @@
+package org.jared.structures.placement;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.jared.structures.Structure;
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.ListTag;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Spawns a fresh entity of the stored type through {@link org.bukkit.World#spawnEntity(Location, EntityType)}. The
+ * rest of the stored NBT, such as names, equipment or item frame contents, is lost.
+ */
+public class BukkitEntityAdapter implements EntityAdapter
+{
+    public static final BukkitEntityAdapter INSTANCE = new BukkitEntityAdapter();
+
+    @Override
+    public Entity spawn(Location base, Structure.EntityInfo entity, Function<UUID, UUID> uuids)
+    {
+        EntityType type = entity.getType();
+        if (type == null || !type.isSpawnable())
+            return null;
+
+        Location location = base.clone().add(entity.getPosition());
+        CompoundTag nbt = entity.getNBT();
+        if (nbt.containsKey("Rotation"))
+        {
+            ListTag rotation = nbt.getListTag("Rotation");
+            location.setYaw(rotation.getFloat(0));
+            location.setPitch(rotation.getFloat(1));
+        }
+
+        return base.getWorld().spawnEntity(location, type);
+    }
+}
@@ -0,0 +1,102 @@
+package org.jared.structures.placement;
+
+import org.bukkit.Location;
+import org.jared.structures.Structure;
+import org.jared.structures.StructureView;
+import org.jared.structures.storage.BlockStorage;
+
+import java.util.Arrays;
+
+/**
+ * The chunks a placed structure view writes to: every chunk column holding one of its blocks or entities, in
+ * ascending x, then z order. Columns of the bounding box that only hold empty positions are left out.
+ */
+public final class ChunkFootprint
+{
+    private final long[] chunks;
+
+    private ChunkFootprint(long[] chunks)
+    {
+        this.chunks = chunks;
+    }
+
+    public static ChunkFootprint of(StructureView view, Location base)
+    {
+        int[] min = view.getMin();
+        int[] max = view.getMax();
+        int firstChunkX = (base.getBlockX() + min[0]) >> 4;
+        int firstChunkZ = (base.getBlockZ() + min[2]) >> 4;
+        int chunksX = ((base.getBlockX() + max[0]) >> 4) - firstChunkX + 1;
+        int chunksZ = ((base.getBlockZ() + max[2]) >> 4) - firstChunkZ + 1;
+
+        //one flag per chunk of the bounding box, set by the blocks in it
+        boolean[] covered = new boolean[chunksX * chunksZ];
+        int count = 0;
+
+        for (int index = 0; index < view.getVolume() && count < covered.length; index++)
+        {
+            if (view.getBlockId(index) == BlockStorage.EMPTY)
+                continue;
+
+            int chunk = (((base.getBlockX() + view.getX(index)) >> 4) - firstChunkX) * chunksZ + ((base.getBlockZ() + view.getZ(index)) >> 4) - firstChunkZ;
+            if (!covered[chunk])
+            {
+                covered[chunk] = true;
+                count++;
+            }
+        }
+
+        long[] chunks = new long[count + view.getEntities().size()];
+        int size = 0;
+        for (int chunk = 0; chunk < covered.length; chunk++)
+        {
+            if (covered[chunk])
+                chunks[size++] = key(firstChunkX + chunk / chunksZ, firstChunkZ + chunk % chunksZ);
+        }
+
+        //entities may stand outside of the blocks' bounding box
+        for (Structure.EntityInfo entity : view.getEntities())
+        {
+            chunks[size++] = key((base.getBlockX() + entity.getBlockPosition().getBlockX()) >> 4, (base.getBlockZ() + entity.getBlockPosition().getBlockZ()) >> 4);
+        }
+
+        Arrays.sort(chunks, 0, size);
+
+        int distinct = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (distinct == 0 || chunks[distinct - 1] != chunks[i])
+                chunks[distinct++] = chunks[i];
+        }
+
+        return new ChunkFootprint(Arrays.copyOf(chunks, distinct));
+    }
+
+    /**
+     * @return a key ordered by x, then z, as used by {@link #contains(int, int)}
+     */
+    public static long key(int chunkX, int chunkZ)
+    {
+        return (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public int size()
+    {
+        return chunks.length;
+    }
+
+    public int getX(int i)
+    {
+        return (int) (chunks[i] >> 32);
+    }
+
+    public int getZ(int i)
+    {
+        return (int) chunks[i];
+    }
+
+    public boolean contains(int chunkX, int chunkZ)
+    {
+        return Arrays.binarySearch(chunks, key(chunkX, chunkZ)) >= 0;
+    }
+}
@@ -0,0 +1,45 @@
+package org.jared.structures.placement;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Keeps the chunks of a running placement loaded. 1.13 has no plugin chunk tickets, so unloads of those chunks are
+ * cancelled instead until the listener is unregistered.
+ */
+class ChunkPinListener implements Listener
+{
+    private final World world;
+    private final ChunkFootprint footprint;
+    private volatile boolean pinned = true;
+
+    ChunkPinListener(World world, ChunkFootprint footprint)
+    {
+        this.world = world;
+        this.footprint = footprint;
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event)
+    {
+        if (!pinned)
+            return;
+
+        Chunk chunk = event.getChunk();
+        if (chunk.getWorld() == world && footprint.contains(chunk.getX(), chunk.getZ()))
+            event.setCancelled(true);
+    }
+
+    /**
+     * Stops pinning right away, even for an event already being dispatched, and unregisters the listener.
+     */
+    void unregister()
+    {
+        pinned = false;
+        HandlerList.unregisterAll(this);
+    }
+}
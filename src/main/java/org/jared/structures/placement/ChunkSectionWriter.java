@@ -0,0 +1,80 @@
+package org.jared.structures.placement;
+
+import net.minecraft.server.v1_13_R2.BlockPosition;
+import net.minecraft.server.v1_13_R2.Chunk;
+import net.minecraft.server.v1_13_R2.ChunkSection;
+import net.minecraft.server.v1_13_R2.IBlockData;
+import net.minecraft.server.v1_13_R2.ITileEntity;
+import net.minecraft.server.v1_13_R2.WorldServer;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.craftbukkit.v1_13_R2.CraftWorld;
+import org.bukkit.craftbukkit.v1_13_R2.block.data.CraftBlockData;
+
+/**
+ * Writes block states straight into the chunk sections of a 1.13.2 server, without physics, per-block lighting or
+ * neighbour updates, whether or not physics are deferred. Each chunk is relit and resent to players once, when the
+ * placement is done with it; deferred physics then run through the world as usual.
+ *
+ * <p>Blocks that have or replace a block entity still go through the world, so block entities are created and
+ * removed properly. Light emitted by placed blocks, such as torches, is only spread once something else updates the
+ * light around them; use {@link NMSBlockWriter} where that matters.</p>
+ */
+public class ChunkSectionWriter extends NMSBlockWriter
+{
+    /**
+     * @return a {@code ChunkSectionWriter} if the server supports it, {@link BukkitBlockWriter#INSTANCE} otherwise
+     */
+    public static BlockWriter createIfSupported()
+    {
+        return isSupported() ? new ChunkSectionWriter() : BukkitBlockWriter.INSTANCE;
+    }
+
+    @Override
+    public void setBlockData(World world, int x, int y, int z, BlockData data, boolean applyPhysics)
+    {
+        if (y < 0 || y >= 256)
+            return;
+
+        WorldServer handle = ((CraftWorld) world).getHandle();
+        Chunk chunk = handle.getChunkAt(x >> 4, z >> 4);
+        IBlockData state = ((CraftBlockData) data).getState();
+
+        ChunkSection[] sections = chunk.getSections();
+        ChunkSection section = sections[y >> 4];
+
+        if (state.getBlock() instanceof ITileEntity || (section != Chunk.a && section.getType(x & 15, y & 15, z & 15).getBlock() instanceof ITileEntity))
+        {
+            handle.setTypeAndData(new BlockPosition(x, y, z), state, NOTIFY_CLIENTS);
+            return;
+        }
+
+        if (section == Chunk.a)
+        {
+            if (isAir(data.getMaterial()))
+                return;
+
+            section = new ChunkSection(y >> 4 << 4, world.getEnvironment() == World.Environment.NORMAL);
+            sections[y >> 4] = section;
+        }
+
+        section.setType(x & 15, y & 15, z & 15, state);
+    }
+
+    private static boolean isAir(Material material)
+    {
+        return material == Material.AIR || material == Material.CAVE_AIR || material == Material.VOID_AIR;
+    }
+
+    @Override
+    public void finishChunk(World world, int chunkX, int chunkZ)
+    {
+        //recomputes the height maps and sky light of the whole chunk
+        Chunk chunk = ((CraftWorld) world).getHandle().getChunkAt(chunkX, chunkZ);
+        chunk.initLighting();
+        chunk.markDirty();
+
+        world.refreshChunk(chunkX, chunkZ);
+    }
+}
@@ -0,0 +1,24 @@
+package org.jared.structures.placement;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.jared.structures.Structure;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * How a {@link PlacementTask} turns stored entities into live ones.
+ *
+ * <p>Adapters are only used on the server thread.</p>
+ */
+public interface EntityAdapter
+{
+    /**
+     * @param base     the placement anchor, which the entity's positions are relative to
+     * @param uuids    maps the UUIDs stored in the structure to the ones used in the world; the same stored UUID always
+     *                 maps to the same new one within a placement, so references between entities stay intact
+     * @return the spawned entity, or {@code null} if it could not be spawned
+     */
+    Entity spawn(Location base, Structure.EntityInfo entity, Function<UUID, UUID> uuids);
+}
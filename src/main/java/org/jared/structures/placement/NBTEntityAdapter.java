@@ -0,0 +1,103 @@
+package org.jared.structures.placement;
+
+import net.minecraft.server.v1_13_R2.EntityTypes;
+import net.minecraft.server.v1_13_R2.IRegistry;
+import net.minecraft.server.v1_13_R2.MinecraftKey;
+import net.minecraft.server.v1_13_R2.NBTTagCompound;
+import net.minecraft.server.v1_13_R2.NBTTagDouble;
+import net.minecraft.server.v1_13_R2.NBTTagList;
+import net.minecraft.server.v1_13_R2.WorldServer;
+import org.bukkit.Location;
+import org.bukkit.craftbukkit.v1_13_R2.CraftWorld;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.jared.structures.Structure;
+import org.jared.structures.nbt.util.NBTUpdater;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Loads entities from their full stored NBT on a 1.13.2 server, the way vanilla structure blocks do, so they keep
+ * their names, equipment, contents and other data. Stored positions and UUIDs are replaced; the UUID of a leash
+ * holder is remapped along with the entity it points to.
+ */
+public class NBTEntityAdapter implements EntityAdapter
+{
+    private final Map<EntityType, EntityTypes<?>> types = new EnumMap<>(EntityType.class);
+
+    /**
+     * @return an {@code NBTEntityAdapter} if the server supports it, {@link BukkitEntityAdapter#INSTANCE} otherwise
+     */
+    public static EntityAdapter createIfSupported()
+    {
+        return NMSBlockWriter.isSupported() ? new NBTEntityAdapter() : BukkitEntityAdapter.INSTANCE;
+    }
+
+    @Override
+    public Entity spawn(Location base, Structure.EntityInfo entity, Function<UUID, UUID> uuids)
+    {
+        NBTTagCompound tag = (NBTTagCompound) NBTUpdater.toNMS(entity.getNBT());
+
+        double x = base.getX() + entity.getPosition().getX();
+        double y = base.getY() + entity.getPosition().getY();
+        double z = base.getZ() + entity.getPosition().getZ();
+
+        NBTTagList position = new NBTTagList();
+        position.add(new NBTTagDouble(x));
+        position.add(new NBTTagDouble(y));
+        position.add(new NBTTagDouble(z));
+        tag.set("Pos", position);
+
+        tag.a("UUID", tag.b("UUID") ? uuids.apply(tag.a("UUID")) : UUID.randomUUID());
+
+        NBTTagCompound leash = tag.hasKey("Leash") ? tag.getCompound("Leash") : null;
+        if (leash != null && leash.b("UUID"))
+            leash.a("UUID", uuids.apply(leash.a("UUID")));
+
+        //hanging entities are positioned by the block they hang on
+        if (tag.hasKey("TileX"))
+        {
+            tag.setInt("TileX", base.getBlockX() + entity.getBlockPosition().getBlockX());
+            tag.setInt("TileY", base.getBlockY() + entity.getBlockPosition().getBlockY());
+            tag.setInt("TileZ", base.getBlockZ() + entity.getBlockPosition().getBlockZ());
+        }
+
+        //unknown ids and broken data are skipped, like in vanilla
+        EntityTypes<?> type = getType(entity.getType());
+        if (type == null)
+            return null;
+
+        WorldServer world = ((CraftWorld) base.getWorld()).getHandle();
+        net.minecraft.server.v1_13_R2.Entity loaded = type.a(world);
+        if (loaded == null)
+            return null;
+
+        try
+        {
+            loaded.f(tag);
+        }
+        catch (RuntimeException e)
+        {
+            return null;
+        }
+
+        //the yaw was already transformed in the stored rotation, which loading applied
+        loaded.setPositionRotation(x, y, z, loaded.yaw, loaded.pitch);
+        return world.addEntity(loaded, CreatureSpawnEvent.SpawnReason.CUSTOM) ? loaded.getBukkitEntity() : null;
+    }
+
+    /**
+     * @return the server's type for the type resolved when the structure was loaded, looked up once per type
+     */
+    private EntityTypes<?> getType(EntityType type)
+    {
+        if (type == null)
+            return null;
+
+        return types.computeIfAbsent(type, key -> IRegistry.ENTITY_TYPE.get(new MinecraftKey(key.getKey().toString())));
+    }
+}
@@ -0,0 +1,100 @@
+package org.jared.structures.placement;
+
+import net.minecraft.server.v1_13_R2.BlockPosition;
+import net.minecraft.server.v1_13_R2.IBlockData;
+import net.minecraft.server.v1_13_R2.ITileEntity;
+import net.minecraft.server.v1_13_R2.NBTTagCompound;
+import net.minecraft.server.v1_13_R2.TileEntity;
+import net.minecraft.server.v1_13_R2.WorldServer;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.v1_13_R2.CraftWorld;
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.util.NBTUpdater;
+
+/**
+ * Writes blocks like {@link BukkitBlockWriter}, and uses the internals of a 1.13.2 server for what the Bukkit API
+ * cannot do.
+ */
+public class NMSBlockWriter extends BukkitBlockWriter
+{
+    private static final String SUPPORTED_VERSION = "v1_13_R2";
+
+    /**
+     * Flag for {@code setTypeAndData} and {@code notify} that only notifies clients, without block updates.
+     */
+    static final int NOTIFY_CLIENTS = 2;
+
+    /**
+     * @return whether the server runs the NMS version this writer is compiled against
+     */
+    public static boolean isSupported()
+    {
+        String serverPackage = Bukkit.getServer().getClass().getPackage().getName();
+        return serverPackage.substring(serverPackage.lastIndexOf('.') + 1).equals(SUPPORTED_VERSION);
+    }
+
+    /**
+     * @return an {@code NMSBlockWriter} if the server supports it, {@link BukkitBlockWriter#INSTANCE} otherwise
+     */
+    public static BlockWriter createIfSupported()
+    {
+        return isSupported() ? new NMSBlockWriter() : BukkitBlockWriter.INSTANCE;
+    }
+
+    @Override
+    public void applyPhysics(World world, int x, int y, int z)
+    {
+        WorldServer handle = ((CraftWorld) world).getHandle();
+        BlockPosition position = new BlockPosition(x, y, z);
+        handle.applyPhysics(position, handle.getType(position).getBlock());
+    }
+
+    @Override
+    public boolean canDeferPhysics()
+    {
+        return true;
+    }
+
+    @Override
+    public void setBlockEntity(World world, int x, int y, int z, CompoundTag data)
+    {
+        //the data is loaded like vanilla structure blocks do
+        WorldServer handle = ((CraftWorld) world).getHandle();
+        BlockPosition position = new BlockPosition(x, y, z);
+        TileEntity tileEntity = handle.getTileEntity(position);
+        if (tileEntity == null)
+            return;
+
+        NBTTagCompound tag = (NBTTagCompound) NBTUpdater.toNMS(data);
+        tag.setInt("x", x);
+        tag.setInt("y", y);
+        tag.setInt("z", z);
+        tileEntity.load(tag);
+        tileEntity.update();
+
+        //sends the new data to players, like any other block entity change
+        IBlockData state = handle.getType(position);
+        handle.notify(position, state, state, NOTIFY_CLIENTS);
+    }
+
+    @Override
+    public CompoundTag getBlockEntity(World world, int x, int y, int z)
+    {
+        WorldServer handle = ((CraftWorld) world).getHandle();
+        BlockPosition position = new BlockPosition(x, y, z);
+        if (!(handle.getType(position).getBlock() instanceof ITileEntity))
+            return null;
+
+        TileEntity tileEntity = handle.getTileEntity(position);
+        if (tileEntity == null)
+            return null;
+
+        //the position is set again when the data is loaded, like in structure files
+        NBTTagCompound tag = tileEntity.save(new NBTTagCompound());
+        tag.remove("x");
+        tag.remove("y");
+        tag.remove("z");
+        return (CompoundTag) NBTUpdater.fromNMS(tag);
+    }
+}
@@ -0,0 +1,123 @@
+package org.jared.structures.placement;
+
+/**
+ * Settings for a {@link PlacementTask}.
+ */
+public class PlacementOptions
+{
+    public static final long DEFAULT_NANOS_PER_TICK = 5_000_000L;
+
+    private long nanosPerTick = DEFAULT_NANOS_PER_TICK;
+    private BlockWriter blockWriter;
+    private boolean deferPhysics;
+    private boolean preloadChunks = true;
+    private boolean captureUndo;
+    private EntityAdapter entityAdapter;
+
+    /**
+     * @return the maximum time a placement may spend per server tick, in nanoseconds
+     */
+    public long getNanosPerTick()
+    {
+        return nanosPerTick;
+    }
+
+    public PlacementOptions setNanosPerTick(long nanosPerTick)
+    {
+        if (nanosPerTick <= 0)
+            throw new IllegalArgumentException("Tick budget must be positive: " + nanosPerTick);
+
+        this.nanosPerTick = nanosPerTick;
+        return this;
+    }
+
+    /**
+     * @return how blocks are put into the world, by default an {@link NMSBlockWriter} where the server supports it
+     */
+    public BlockWriter getBlockWriter()
+    {
+        if (blockWriter == null)
+            blockWriter = NMSBlockWriter.createIfSupported();
+
+        return blockWriter;
+    }
+
+    /**
+     * @param blockWriter how blocks are put into the world, e.g. {@link ChunkSectionWriter#createIfSupported()} for
+     *                    large structures
+     */
+    public PlacementOptions setBlockWriter(BlockWriter blockWriter)
+    {
+        if (blockWriter == null)
+            throw new IllegalArgumentException("Block writer must not be null");
+
+        this.blockWriter = blockWriter;
+        return this;
+    }
+
+    public boolean isDeferPhysics()
+    {
+        return deferPhysics;
+    }
+
+    /**
+     * @param deferPhysics whether blocks are placed without physics, followed by a single pass that updates the
+     *                     neighbours of every placed block once the whole structure is down. This avoids sand falling
+     *                     and fluids flowing out of a half placed structure. Needs a block writer that
+     *                     {@link BlockWriter#canDeferPhysics() can defer physics}, which the Bukkit fallback cannot.
+     */
+    public PlacementOptions setDeferPhysics(boolean deferPhysics)
+    {
+        this.deferPhysics = deferPhysics;
+        return this;
+    }
+
+    public boolean isPreloadChunks()
+    {
+        return preloadChunks;
+    }
+
+    /**
+     * @param preloadChunks whether every chunk the structure touches is loaded, spread over ticks within the budget,
+     *                      before the first block is written, and kept loaded until the placement is done
+     */
+    public PlacementOptions setPreloadChunks(boolean preloadChunks)
+    {
+        this.preloadChunks = preloadChunks;
+        return this;
+    }
+
+    public boolean isCaptureUndo()
+    {
+        return captureUndo;
+    }
+
+    /**
+     * @param captureUndo whether the placement records what it overwrites, see {@link PlacementTask#getUndoSnapshot()}
+     */
+    public PlacementOptions setCaptureUndo(boolean captureUndo)
+    {
+        this.captureUndo = captureUndo;
+        return this;
+    }
+
+    /**
+     * @return the adapter entities are spawned with, by default an {@link NBTEntityAdapter} where the server supports it
+     */
+    public EntityAdapter getEntityAdapter()
+    {
+        if (entityAdapter == null)
+            entityAdapter = NBTEntityAdapter.createIfSupported();
+
+        return entityAdapter;
+    }
+
+    public PlacementOptions setEntityAdapter(EntityAdapter entityAdapter)
+    {
+        if (entityAdapter == null)
+            throw new IllegalArgumentException("Entity adapter must not be null");
+
+        this.entityAdapter = entityAdapter;
+        return this;
+    }
+}
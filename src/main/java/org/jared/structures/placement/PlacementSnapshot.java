@@ -0,0 +1,88 @@
+package org.jared.structures.placement;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.jared.structures.Structure;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a placement overwrote, for undoing it. The previous blocks are kept like a structure's own: palette ids in a
+ * bit-packed storage over the bounding box of the written positions, with block entity data on the side. Each position
+ * of that box takes as many bits as the number of distinct replaced states needs, so a few hundred states still cost
+ * about a byte per position. Positions the placement did not write stay empty and are left alone by an undo.
+ */
+public class PlacementSnapshot
+{
+    private final Location base;
+    private final Structure structure;
+    private final List<Entity> spawnedEntities;
+
+    PlacementSnapshot(Location base, Structure structure, List<Entity> spawnedEntities)
+    {
+        this.base = base.clone();
+        this.structure = structure;
+        this.spawnedEntities = Collections.unmodifiableList(spawnedEntities);
+    }
+
+    /**
+     * @return the anchor the placement was placed at, which {@link #getStructure()} is relative to
+     */
+    public Location getBase()
+    {
+        return base.clone();
+    }
+
+    /**
+     * @return the previous contents of the overwritten positions, which can also be saved like any structure
+     */
+    public Structure getStructure()
+    {
+        return structure;
+    }
+
+    /**
+     * @return the entities the placement spawned, which an undo removes
+     */
+    public List<Entity> getSpawnedEntities()
+    {
+        return spawnedEntities;
+    }
+
+    /**
+     * Restores everything immediately on the calling thread.
+     */
+    public void undo()
+    {
+        removeEntities();
+        structure.place(base);
+    }
+
+    /**
+     * Restores the previous blocks over several ticks, like any placement, after removing the spawned entities.
+     */
+    public PlacementTask undo(Plugin plugin, PlacementOptions options)
+    {
+        removeEntities();
+        return structure.place(base, plugin, options);
+    }
+
+    private void removeEntities()
+    {
+        for (Entity entity : spawnedEntities)
+        {
+            if (entity.isValid())
+                entity.remove();
+        }
+    }
+
+    /**
+     * @return a rough estimate of the heap held by this snapshot
+     */
+    public long getEstimatedRetainedBytes()
+    {
+        return structure.getEstimatedRetainedBytes() + 16L * spawnedEntities.size();
+    }
+}
@@ -0,0 +1,512 @@
+package org.jared.structures.placement;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jared.structures.Structure;
+import org.jared.structures.StructureView;
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.storage.BlockEntityTable;
+import org.jared.structures.storage.BlockPalette;
+import org.jared.structures.storage.BlockStorage;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Places a structure view chunk section by chunk section, spending at most {@link PlacementOptions#getNanosPerTick()}
+ * per server tick. Once a chunk's blocks are down, the stored data of its block entities is loaded, one update per
+ * block entity, before the chunk is finished. Entities inside a chunk are queued as soon as that chunk's blocks are down and spawned through
+ * {@link PlacementOptions#getEntityAdapter()}, one by one within the same budget, before the next blocks.
+ *
+ * <p>With {@link PlacementOptions#isPreloadChunks()}, the chunks of the {@link ChunkFootprint} are loaded first, within
+ * the same budget, and no block is written before all of them are loaded. Scheduled placements keep those chunks from
+ * unloading until they are done.</p>
+ *
+ * <p>With {@link PlacementOptions#isCaptureUndo()}, each position is read right before it is overwritten and kept in a
+ * {@link PlacementSnapshot}, along with the spawned entities.</p>
+ *
+ * <p>With {@link PlacementOptions#isDeferPhysics()}, blocks are placed without physics and their neighbours are only
+ * updated in a second pass over the same order, once every block and entity is in place. That pass shares the tick
+ * budget.</p>
+ *
+ * <p>Blocks are ordered by a sort key of {@code [chunk x:12][chunk z:12][section y:8][storage index:32]}, with chunk
+ * coordinates relative to the structure's first chunk. Relative chunk x stays below 2048, so the sign bit of the key is
+ * never set and signed order is the same as unsigned order.</p>
+ */
+public class PlacementTask extends BukkitRunnable
+{
+    private static final int CHECK_INTERVAL = 64;
+    private static final int MAX_RELATIVE_CHUNKS = 1 << 11;
+
+    private final World world;
+    private final int baseX;
+    private final int baseY;
+    private final int baseZ;
+    private final Location entityBase;
+    private final StructureView view;
+    private final BlockData[] palette;
+    private final PlacementOptions options;
+    private final BlockWriter blockWriter;
+    private final EntityAdapter entityAdapter;
+    private final boolean deferPhysics;
+    private int firstChunkX;
+    private int firstChunkZ;
+    private int[] writtenMin;
+    private int[] writtenMax;
+
+    private final ChunkFootprint footprint;
+    private final long[] order;
+    private final long[] blockEntityOrder;
+    private final Map<Integer, List<Structure.EntityInfo>> entitiesByChunk = Maps.newHashMap();
+    private final List<Structure.EntityInfo> remainingEntities = Lists.newArrayList();
+    private final BlockStorage undoBlocks;
+    private final BlockPalette undoPalette;
+    private final BlockEntityTable undoBlockEntities;
+    private final List<Entity> spawnedEntities;
+    private final int[] undoOrigin;
+    private PlacementSnapshot undoSnapshot;
+
+    private final Deque<Structure.EntityInfo> pendingEntities = new ArrayDeque<>();
+    private final Map<UUID, UUID> uuids = Maps.newHashMap();
+
+    private final CompletableFuture<PlacementTask> future = new CompletableFuture<>();
+    private int preloadCursor;
+    private ChunkPinListener pinListener;
+    private int cursor;
+    private int blockEntityCursor;
+    private int physicsCursor;
+    private boolean scheduled;
+    private boolean placing;
+
+    public PlacementTask(StructureView view, Location base, PlacementOptions options)
+    {
+        this.world = base.getWorld();
+        this.baseX = base.getBlockX();
+        this.baseY = base.getBlockY();
+        this.baseZ = base.getBlockZ();
+        this.entityBase = new Location(base.getWorld(), baseX, baseY, baseZ);
+        this.view = view;
+        this.palette = view.getPalette();
+        this.options = options;
+        this.blockWriter = options.getBlockWriter();
+        this.entityAdapter = options.getEntityAdapter();
+        this.deferPhysics = options.isDeferPhysics();
+
+        if (deferPhysics && !blockWriter.canDeferPhysics())
+            throw new IllegalArgumentException("Deferred physics is not supported by " + blockWriter.getClass().getSimpleName());
+
+        this.footprint = options.isPreloadChunks() ? ChunkFootprint.of(view, base) : null;
+        this.order = sortByChunkSection();
+
+        if (options.isCaptureUndo())
+        {
+            //only covers the positions that are written, structure void around them is never read
+            this.undoBlocks = new BlockStorage(writtenMax[0] - writtenMin[0] + 1, writtenMax[1] - writtenMin[1] + 1, writtenMax[2] - writtenMin[2] + 1);
+            this.undoPalette = new BlockPalette();
+            this.undoBlockEntities = new BlockEntityTable();
+            this.spawnedEntities = Lists.newArrayList();
+            this.undoOrigin = writtenMin;
+        }
+        else
+        {
+            this.undoBlocks = null;
+            this.undoPalette = null;
+            this.undoBlockEntities = null;
+            this.spawnedEntities = null;
+            this.undoOrigin = null;
+        }
+        this.blockEntityOrder = sortBlockEntitiesByChunk();
+        groupEntities(view.getEntities());
+
+        //the future may also be cancelled or completed by whoever holds it, which has to stop the task too; while a pass
+        //is placing, that pass releases once it has stopped, so the snapshot is never built while it is still written
+        future.whenComplete((task, error) -> releaseUnlessPlacing());
+    }
+
+    public synchronized PlacementTask start(Plugin plugin)
+    {
+        //checked under the same lock as unpin(), so a future completed on another thread cannot leave chunks pinned
+        if (future.isDone())
+            return this;
+
+        this.scheduled = true;
+        if (footprint != null)
+        {
+            pinListener = new ChunkPinListener(world, footprint);
+            plugin.getServer().getPluginManager().registerEvents(pinListener, plugin);
+        }
+
+        runTaskTimer(plugin, 0L, 1L);
+        return this;
+    }
+
+    /**
+     * Places everything that is left in the current tick, ignoring the budget.
+     */
+    public PlacementTask placeAll()
+    {
+        placeWithin(Long.MAX_VALUE);
+        return this;
+    }
+
+    @Override
+    public void run()
+    {
+        placeWithin(options.getNanosPerTick());
+    }
+
+    @Override
+    public synchronized void cancel()
+    {
+        stop();
+        future.cancel(false);
+    }
+
+    /**
+     * @return what the placement overwrote, once it is done, failed or was cancelled, or {@code null} before that or
+     * if {@link PlacementOptions#isCaptureUndo()} is off; an unfinished placement's snapshot covers the positions
+     * written so far. If the placement is cancelled from another thread while a tick is placing, the snapshot is only
+     * set once that tick has stopped writing.
+     */
+    public synchronized PlacementSnapshot getUndoSnapshot()
+    {
+        return undoSnapshot;
+    }
+
+    /**
+     * @return a future completed once every block and entity has been placed; cancelling or completing it stops the
+     * placement like {@link #cancel()}
+     */
+    public CompletableFuture<PlacementTask> getFuture()
+    {
+        return future;
+    }
+
+    public int getPlacedBlocks()
+    {
+        return cursor;
+    }
+
+    public int getTotalBlocks()
+    {
+        return order.length;
+    }
+
+    public double getProgress()
+    {
+        return order.length == 0 ? 1.0D : (double) cursor / order.length;
+    }
+
+    private void placeWithin(long budget)
+    {
+        synchronized (this)
+        {
+            if (future.isDone())
+                return;
+
+            placing = true;
+        }
+
+        try
+        {
+            long start = System.nanoTime();
+            int placed = 0;
+
+            //generating a chunk can take longer than a whole tick, so the budget is checked after each load
+            while (footprint != null && preloadCursor < footprint.size())
+            {
+                int chunkX = footprint.getX(preloadCursor);
+                int chunkZ = footprint.getZ(preloadCursor++);
+
+                if (!world.isChunkLoaded(chunkX, chunkZ))
+                {
+                    world.loadChunk(chunkX, chunkZ, true);
+
+                    if (shouldYield(start, budget))
+                        return;
+                }
+            }
+
+            while (cursor < order.length || !pendingEntities.isEmpty())
+            {
+                //spawning an entity costs far more than placing a block, so the budget is checked after each one
+                if (!pendingEntities.isEmpty())
+                {
+                    spawnEntity(pendingEntities.poll());
+
+                    if (shouldYield(start, budget))
+                        return;
+                    continue;
+                }
+
+                long key = order[cursor++];
+                int index = (int) key;
+                int x = view.getX(index);
+                int y = view.getY(index);
+                int z = view.getZ(index);
+
+                if (undoBlocks != null)
+                    capture(x, y, z);
+
+                blockWriter.setBlockData(world, baseX + x, baseY + y, baseZ + z, palette[view.getBlockId(index)], !deferPhysics);
+
+                int chunk = chunkOf(key);
+                if (cursor == order.length || chunkOf(order[cursor]) != chunk)
+                {
+                    loadBlockEntities(chunk);
+                    blockWriter.finishChunk(world, firstChunkX + (chunk >>> 12), firstChunkZ + (chunk & 0xFFF));
+                    queueEntities(entitiesByChunk.remove(chunk));
+                }
+
+                if (++placed % CHECK_INTERVAL == 0 && shouldYield(start, budget))
+                    return;
+            }
+
+            for (List<Structure.EntityInfo> entities : entitiesByChunk.values())
+            {
+                queueEntities(entities);
+            }
+            entitiesByChunk.clear();
+            queueEntities(remainingEntities);
+            remainingEntities.clear();
+
+            while (!pendingEntities.isEmpty())
+            {
+                spawnEntity(pendingEntities.poll());
+
+                if (shouldYield(start, budget))
+                    return;
+            }
+
+            while (deferPhysics && physicsCursor < order.length)
+            {
+                int index = (int) order[physicsCursor++];
+                blockWriter.applyPhysics(world, baseX + view.getX(index), baseY + view.getY(index), baseZ + view.getZ(index));
+
+                if (++placed % CHECK_INTERVAL == 0 && shouldYield(start, budget))
+                    return;
+            }
+
+            finish();
+        }
+        catch (Throwable e)
+        {
+            //also catches linkage errors of a writer or adapter built for another server version
+            stop();
+            release();
+            future.completeExceptionally(e);
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                placing = false;
+                if (future.isDone())
+                    releaseUnlessPlacing();
+            }
+        }
+    }
+
+    /**
+     * @return whether to stop for this tick: the budget is spent, or the future was cancelled or completed elsewhere
+     */
+    private boolean shouldYield(long start, long budget)
+    {
+        return future.isDone() || System.nanoTime() - start >= budget;
+    }
+
+    private void finish()
+    {
+        stop();
+        release();
+        future.complete(this);
+    }
+
+    private synchronized void stop()
+    {
+        if (scheduled)
+        {
+            scheduled = false;
+            super.cancel();
+        }
+    }
+
+    private void capture(int x, int y, int z)
+    {
+        int undoIndex = undoBlocks.getIndex(x - undoOrigin[0], y - undoOrigin[1], z - undoOrigin[2]);
+        undoBlocks.set(undoIndex, undoPalette.getOrAdd(blockWriter.getBlockData(world, baseX + x, baseY + y, baseZ + z)));
+
+        CompoundTag blockEntity = blockWriter.getBlockEntity(world, baseX + x, baseY + y, baseZ + z);
+        if (blockEntity != null)
+            undoBlockEntities.put(undoIndex, blockEntity);
+    }
+
+    private synchronized void releaseUnlessPlacing()
+    {
+        if (!placing)
+        {
+            stop();
+            release();
+        }
+    }
+
+    /**
+     * Builds the snapshot and unpins the chunks; only called by the thread that places, or while nothing is placing.
+     */
+    private synchronized void release()
+    {
+        if (undoBlocks != null && undoSnapshot == null)
+        {
+            undoBlockEntities.compact();
+            undoSnapshot = new PlacementSnapshot(entityBase, new Structure(undoBlocks, undoPalette, undoBlockEntities, undoOrigin), spawnedEntities);
+        }
+
+        unpin();
+    }
+
+    private synchronized void unpin()
+    {
+        if (pinListener != null)
+        {
+            pinListener.unregister();
+            pinListener = null;
+        }
+    }
+
+    private long[] sortByChunkSection()
+    {
+        int[] min = view.getMin();
+        int[] max = view.getMax();
+        firstChunkX = (baseX + min[0]) >> 4;
+        firstChunkZ = (baseZ + min[2]) >> 4;
+
+        if (((baseX + max[0]) >> 4) - firstChunkX >= MAX_RELATIVE_CHUNKS || ((baseZ + max[2]) >> 4) - firstChunkZ >= MAX_RELATIVE_CHUNKS)
+            throw new IllegalArgumentException("Structure spans too many chunks to place: " + (max[0] - min[0] + 1) + "x" + (max[2] - min[2] + 1));
+
+        long[] keys = new long[view.getBlockCount()];
+        int count = 0;
+        writtenMin = new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        writtenMax = new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+
+        for (int index = 0; index < view.getVolume(); index++)
+        {
+            if (view.getBlockId(index) == BlockStorage.EMPTY)
+                continue;
+
+            include(view.getX(index), view.getY(index), view.getZ(index));
+
+            int chunkX = ((baseX + view.getX(index)) >> 4) - firstChunkX;
+            int chunkZ = ((baseZ + view.getZ(index)) >> 4) - firstChunkZ;
+            int section = (baseY + view.getY(index)) >> 4;
+
+            keys[count++] = sortKey(chunkX, chunkZ, section, index);
+        }
+
+        if (count == 0)
+        {
+            writtenMin = min.clone();
+            writtenMax = min.clone();
+        }
+
+        Arrays.sort(keys, 0, count);
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    private void include(int x, int y, int z)
+    {
+        writtenMin[0] = Math.min(writtenMin[0], x);
+        writtenMin[1] = Math.min(writtenMin[1], y);
+        writtenMin[2] = Math.min(writtenMin[2], z);
+        writtenMax[0] = Math.max(writtenMax[0], x);
+        writtenMax[1] = Math.max(writtenMax[1], y);
+        writtenMax[2] = Math.max(writtenMax[2], z);
+    }
+
+    /**
+     * Orders the block entity entries like the blocks, with the entry in place of the storage index.
+     */
+    private long[] sortBlockEntitiesByChunk()
+    {
+        long[] keys = new long[view.getBlockEntityCount()];
+        for (int entry = 0; entry < keys.length; entry++)
+        {
+            int index = view.getBlockEntityIndex(entry);
+            int chunkX = ((baseX + view.getX(index)) >> 4) - firstChunkX;
+            int chunkZ = ((baseZ + view.getZ(index)) >> 4) - firstChunkZ;
+
+            keys[entry] = sortKey(chunkX, chunkZ, 0, entry);
+        }
+
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Loads the data of every block entity in the given chunk and of any earlier chunks without placed blocks.
+     */
+    private void loadBlockEntities(int chunk)
+    {
+        while (blockEntityCursor < blockEntityOrder.length && chunkOf(blockEntityOrder[blockEntityCursor]) <= chunk)
+        {
+            int entry = (int) blockEntityOrder[blockEntityCursor++];
+            int index = view.getBlockEntityIndex(entry);
+
+            if (view.getBlockId(index) != BlockStorage.EMPTY)
+                blockWriter.setBlockEntity(world, baseX + view.getX(index), baseY + view.getY(index), baseZ + view.getZ(index), view.getBlockEntityData(entry));
+        }
+    }
+
+    private void groupEntities(List<Structure.EntityInfo> entities)
+    {
+        for (Structure.EntityInfo entity : entities)
+        {
+            int chunkX = ((entityBase.getBlockX() + entity.getBlockPosition().getBlockX()) >> 4) - firstChunkX;
+            int chunkZ = ((entityBase.getBlockZ() + entity.getBlockPosition().getBlockZ()) >> 4) - firstChunkZ;
+
+            if (chunkX < 0 || chunkZ < 0 || chunkX >= MAX_RELATIVE_CHUNKS || chunkZ >= MAX_RELATIVE_CHUNKS)
+            {
+                remainingEntities.add(entity);
+                continue;
+            }
+
+            entitiesByChunk.computeIfAbsent(chunkX << 12 | chunkZ, chunk -> Lists.newArrayList()).add(entity);
+        }
+    }
+
+    private void queueEntities(List<Structure.EntityInfo> entities)
+    {
+        if (entities != null)
+            pendingEntities.addAll(entities);
+    }
+
+    private void spawnEntity(Structure.EntityInfo entity)
+    {
+        Entity spawned = entityAdapter.spawn(entityBase, entity, uuid -> uuids.computeIfAbsent(uuid, stored -> UUID.randomUUID()));
+        if (spawned != null && spawnedEntities != null)
+            spawnedEntities.add(spawned);
+    }
+
+    /**
+     * Each field is masked to its width, so a negative or oversized value cannot spill into the fields above it.
+     */
+    static long sortKey(int chunkX, int chunkZ, int section, int index)
+    {
+        return (chunkX & 0xFFFL) << 52 | (chunkZ & 0xFFFL) << 40 | (section & 0xFFL) << 32 | (index & 0xFFFFFFFFL);
+    }
+
+    private static int chunkOf(long key)
+    {
+        return (int) (key >>> 40);
+    }
+}
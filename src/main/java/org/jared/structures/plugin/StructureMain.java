@@ -1,23 +1,61 @@
 package org.jared.structures.plugin;
 
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.jared.structures.StructureCache;
 import org.jared.structures.StructureTest;
+import org.jared.structures.nbt.util.LocalDataFixer;
+import org.jared.structures.nbt.util.NBTUpdater;
+import org.jared.structures.nbt.util.UpgradeCache;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 public class StructureMain extends JavaPlugin
 {
+    private static final int LOADER_THREADS = Integer.getInteger("org.jared.structures.loaderThreads", Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() / 2, 4)));
+    private static final int LOADER_QUEUE_SIZE = Integer.getInteger("org.jared.structures.loaderQueueSize", 64);
+    private static final long CACHE_BYTES = Long.getLong("org.jared.structures.cacheBytes", 256L * 1024 * 1024);
+    private static final boolean FIXER_BOOTSTRAP = Boolean.parseBoolean(System.getProperty("org.jared.structures.fixerBootstrap", "true"));
+    private static final boolean UPGRADE_CACHE = Boolean.parseBoolean(System.getProperty("org.jared.structures.upgradeCache", "true"));
+
     private static StructureMain instance = null;
 
+    private ThreadPoolExecutor loadExecutor;
+    private StructureCache structureCache;
+    private final Executor mainThreadExecutor = task ->
+    {
+        if (Bukkit.isPrimaryThread())
+            task.run();
+        else
+            getServer().getScheduler().runTask(this, task);
+    };
+
     @Override
     public void onEnable()
     {
         instance = this;
 
+        if (FIXER_BOOTSTRAP)
+            bootstrapDataFixer();
+
+        loadExecutor = createLoadExecutor();
+        structureCache = new StructureCache(CACHE_BYTES);
+        if (UPGRADE_CACHE)
+            NBTUpdater.setUpgradeCache(createUpgradeCache());
         registerListeners();
     }
 
     @Override
     public void onDisable()
     {
+        NBTUpdater.setUpgradeCache(null);
+        loadExecutor.shutdownNow();
+        loadExecutor = null;
+        structureCache = null;
+
         instance = null;
     }
 
@@ -26,6 +64,78 @@ public class StructureMain extends JavaPlugin
         getServer().getPluginManager().registerEvents(new StructureTest(), this);
     }
 
+    /**
+     * @return the bounded pool structure files are read and decoded on; submissions beyond its queue are rejected
+     */
+    public Executor getLoadExecutor()
+    {
+        return loadExecutor;
+    }
+
+    /**
+     * @return the shared cache of loaded structure templates
+     */
+    public StructureCache getStructureCache()
+    {
+        return structureCache;
+    }
+
+    /**
+     * @return an executor that runs tasks on the server thread, immediately if already on it
+     */
+    public Executor getMainThreadExecutor()
+    {
+        return mainThreadExecutor;
+    }
+
+    private ThreadPoolExecutor createLoadExecutor()
+    {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable ->
+        {
+            Thread thread = new Thread(runnable, "StructureAPI Loader #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(LOADER_QUEUE_SIZE), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Builds the DataFixer in the background, so the first legacy structure does not stall whichever thread loads it.
+     */
+    private void bootstrapDataFixer()
+    {
+        Executor bootstrapExecutor = task ->
+        {
+            Thread thread = new Thread(task, "StructureAPI DataFixer Bootstrap");
+            thread.setDaemon(true);
+            thread.start();
+        };
+
+        long start = System.nanoTime();
+        NBTUpdater.bootstrap(bootstrapExecutor, LocalDataFixer.DEFAULT_BOOTSTRAP_THREADS).whenComplete((dataFixer, throwable) ->
+        {
+            if (throwable != null)
+                getLogger().log(Level.SEVERE, "Could not build the DataFixer, legacy structures can not be loaded", throwable);
+            else
+                getLogger().info("Built the DataFixer in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        });
+    }
+
+    private UpgradeCache createUpgradeCache()
+    {
+        try
+        {
+            return new UpgradeCache(getDataFolder().toPath().resolve("upgrade-cache"), getLogger());
+        }
+        catch (IOException e)
+        {
+            getLogger().log(Level.WARNING, "Could not create the upgrade cache, legacy structures will be upgraded on every load", e);
+            return null;
+        }
+    }
+
     public static StructureMain getInstance()
     {
         return instance;
@@ -0,0 +1,229 @@
+package org.jared.structures.storage;
+
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.NBTConstants;
+import org.jared.structures.nbt.NBTInputStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The block entity data of a structure, keyed by {@link BlockStorage} index. Payloads read from a file are kept as
+ * the undecoded bytes of their compound, all in one array, and only decoded the first time they are asked for; the
+ * children of a decoded compound are in turn only decoded when they are read.
+ *
+ * <p>Entries are sorted by index on first lookup, or by {@link #compact()}; a later entry for the same index replaces
+ * an earlier one. Once compacted, the table can be read from any thread, but changes must not race with reads.</p>
+ */
+public final class BlockEntityTable
+{
+    private int[] indices = new int[0];
+    private int[] offsets = new int[0];
+    private int[] lengths = new int[0];
+    private CompoundTag[] tags = new CompoundTag[0];
+    private byte[] data = new byte[0];
+    private int dataLength;
+    private int size;
+    private boolean sorted = true;
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Adds the raw payload of a compound, in big endian byte order as in structure files.
+     */
+    public void put(int index, byte[] payload)
+    {
+        int entry = add(index);
+
+        if (dataLength + payload.length > data.length)
+            data = Arrays.copyOf(data, Math.max(dataLength + payload.length, data.length * 2));
+
+        System.arraycopy(payload, 0, data, dataLength, payload.length);
+        offsets[entry] = dataLength;
+        lengths[entry] = payload.length;
+        dataLength += payload.length;
+    }
+
+    public void put(int index, CompoundTag tag)
+    {
+        int entry = add(index);
+        offsets[entry] = -1;
+        tags[entry] = tag;
+    }
+
+    private int add(int index)
+    {
+        if (size == indices.length)
+        {
+            int capacity = Math.max(16, size * 2);
+            indices = Arrays.copyOf(indices, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+        }
+
+        if (size > 0 && indices[size - 1] >= index)
+            sorted = false;
+
+        indices[size] = index;
+        return size++;
+    }
+
+    /**
+     * Sorts the entries and releases unused capacity; call once all entries are added.
+     */
+    public void compact()
+    {
+        ensureSorted();
+
+        if (size < indices.length)
+        {
+            indices = Arrays.copyOf(indices, size);
+            offsets = Arrays.copyOf(offsets, size);
+            lengths = Arrays.copyOf(lengths, size);
+            tags = Arrays.copyOf(tags, size);
+        }
+
+        if (dataLength < data.length)
+            data = Arrays.copyOf(data, dataLength);
+    }
+
+    /**
+     * @return the storage index of the given entry, entries being in ascending index order
+     */
+    public int getIndex(int entry)
+    {
+        ensureSorted();
+        return indices[entry];
+    }
+
+    /**
+     * @return the entry at the given storage index, or a negative value if the block has no data
+     */
+    public int find(int index)
+    {
+        ensureSorted();
+        return Arrays.binarySearch(indices, 0, size, index);
+    }
+
+    /**
+     * Decodes the data of an entry on first use. Keys of the returned compound are decoded as they are read.
+     */
+    public CompoundTag getTag(int entry)
+    {
+        ensureSorted();
+
+        CompoundTag tag = tags[entry];
+        if (tag == null)
+        {
+            try
+            {
+                byte[] payload = Arrays.copyOfRange(data, offsets[entry], offsets[entry] + lengths[entry]);
+                tag = (CompoundTag) NBTInputStream.readPayload(NBTConstants.TYPE_COMPOUND, payload, ByteOrder.BIG_ENDIAN);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Malformed block entity data at index " + indices[entry], e);
+            }
+
+            tags[entry] = tag;
+        }
+
+        return tag;
+    }
+
+    /**
+     * Replaces the data of an entry, e.g. with its upgraded version.
+     */
+    public void setTag(int entry, CompoundTag tag)
+    {
+        ensureSorted();
+        tags[entry] = tag;
+    }
+
+    /**
+     * @param mapping maps an old storage index to the new one
+     * @return a table with the same data under new indices; raw payloads are shared, not copied
+     */
+    public BlockEntityTable remap(IntUnaryOperator mapping)
+    {
+        ensureSorted();
+
+        BlockEntityTable remapped = new BlockEntityTable();
+        remapped.indices = new int[size];
+        remapped.offsets = Arrays.copyOf(offsets, size);
+        remapped.lengths = Arrays.copyOf(lengths, size);
+        remapped.tags = Arrays.copyOf(tags, size);
+        remapped.data = data;
+        remapped.dataLength = dataLength;
+        remapped.size = size;
+        remapped.sorted = false;
+
+        for (int entry = 0; entry < size; entry++)
+        {
+            remapped.indices[entry] = mapping.applyAsInt(indices[entry]);
+        }
+
+        remapped.ensureSorted();
+        return remapped;
+    }
+
+    /**
+     * @return a rough estimate of the heap held by this table; decoded tags are not counted
+     */
+    public long getRetainedBytes()
+    {
+        return 64L + data.length + 16L * indices.length + 4L * tags.length;
+    }
+
+    private void ensureSorted()
+    {
+        if (sorted)
+            return;
+
+        //sorts the entries by index and then by insertion order, carrying the other columns along
+        long[] keys = new long[size];
+        for (int entry = 0; entry < size; entry++)
+        {
+            keys[entry] = (long) indices[entry] << 32 | entry;
+        }
+        Arrays.sort(keys);
+
+        int[] sortedIndices = new int[size];
+        int[] sortedOffsets = new int[size];
+        int[] sortedLengths = new int[size];
+        CompoundTag[] sortedTags = new CompoundTag[size];
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            //only the last entry for an index is kept
+            if (i + 1 < size && keys[i + 1] >>> 32 == keys[i] >>> 32)
+                continue;
+
+            int entry = (int) keys[i];
+            sortedIndices[count] = indices[entry];
+            sortedOffsets[count] = offsets[entry];
+            sortedLengths[count] = lengths[entry];
+            sortedTags[count] = tags[entry];
+            count++;
+        }
+
+        this.indices = sortedIndices;
+        this.offsets = sortedOffsets;
+        this.lengths = sortedLengths;
+        this.tags = sortedTags;
+        this.size = count;
+        this.sorted = true;
+    }
+}
@@ -0,0 +1,66 @@
+package org.jared.structures.storage;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.bukkit.block.data.BlockData;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distinct {@link BlockData} values referenced by a {@link BlockStorage}. Id {@link BlockStorage#EMPTY}
+ * is reserved and never holds a value. Entries are only ever added; a rotated palette is a new palette.
+ */
+public class BlockPalette
+{
+    private final List<BlockData> entries = Lists.newArrayList();
+    private final Map<BlockData, Integer> ids = Maps.newHashMap();
+
+    public BlockPalette()
+    {
+        entries.add(null);
+    }
+
+    /**
+     * Returns the id of the given data, adding it to the palette if an equal value is not present yet.
+     */
+    public int getOrAdd(BlockData data)
+    {
+        Integer id = ids.get(data);
+        if (id == null)
+        {
+            id = entries.size();
+            entries.add(data);
+            ids.put(data, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Appends a value under the next free id, even if an equal value is already present.
+     *
+     * @return the id of the new entry
+     */
+    public int add(BlockData data)
+    {
+        int id = entries.size();
+        entries.add(data);
+        ids.putIfAbsent(data, id);
+
+        return id;
+    }
+
+    public BlockData get(int id)
+    {
+        return entries.get(id);
+    }
+
+    /**
+     * @return the number of ids in use, including the reserved empty id
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+}
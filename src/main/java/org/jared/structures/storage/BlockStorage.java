@@ -0,0 +1,127 @@
+package org.jared.structures.storage;
+
+/**
+ * Palette ids for every position inside a structure's bounding box, stored in Y/Z/X order.
+ * Id {@link #EMPTY} marks a position the structure leaves untouched (no entry in the file).
+ */
+public class BlockStorage
+{
+    public static final int EMPTY = 0;
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final PackedIntArray ids;
+
+    private int blockCount;
+
+    public BlockStorage(int sizeX, int sizeY, int sizeZ)
+    {
+        if (sizeX < 0 || sizeY < 0 || sizeZ < 0)
+            throw new IllegalArgumentException("Invalid dimensions: " + sizeX + "x" + sizeY + "x" + sizeZ);
+
+        long volume = (long) sizeX * sizeY * sizeZ;
+        if (volume > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Structure too large: " + sizeX + "x" + sizeY + "x" + sizeZ);
+
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.ids = new PackedIntArray((int) volume);
+    }
+
+    public int getSizeX()
+    {
+        return sizeX;
+    }
+
+    public int getSizeY()
+    {
+        return sizeY;
+    }
+
+    public int getSizeZ()
+    {
+        return sizeZ;
+    }
+
+    public int getVolume()
+    {
+        return ids.size();
+    }
+
+    /**
+     * @return the number of non-empty positions
+     */
+    public int getBlockCount()
+    {
+        return blockCount;
+    }
+
+    public boolean contains(int x, int y, int z)
+    {
+        return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+    }
+
+    public int getIndex(int x, int y, int z)
+    {
+        if (!contains(x, y, z))
+            throw new IndexOutOfBoundsException("Position " + x + "," + y + "," + z + " outside of " + sizeX + "x" + sizeY + "x" + sizeZ);
+
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    public int getX(int index)
+    {
+        return index % sizeX;
+    }
+
+    public int getY(int index)
+    {
+        return index / (sizeX * sizeZ);
+    }
+
+    public int getZ(int index)
+    {
+        return (index / sizeX) % sizeZ;
+    }
+
+    public int get(int index)
+    {
+        return ids.get(index);
+    }
+
+    public int get(int x, int y, int z)
+    {
+        return ids.get(getIndex(x, y, z));
+    }
+
+    public void set(int index, int id)
+    {
+        int previous = ids.get(index);
+        if (previous == EMPTY && id != EMPTY)
+            blockCount++;
+        else if (previous != EMPTY && id == EMPTY)
+            blockCount--;
+
+        ids.set(index, id);
+    }
+
+    public void set(int x, int y, int z, int id)
+    {
+        set(getIndex(x, y, z), id);
+    }
+
+    public int getBitsPerEntry()
+    {
+        return ids.getBitsPerEntry();
+    }
+
+    /**
+     * @return the approximate number of heap bytes held by this storage
+     */
+    public long getRetainedBytes()
+    {
+        return 32L + ids.getRetainedBytes();
+    }
+}
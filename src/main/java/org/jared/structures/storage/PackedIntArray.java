@@ -0,0 +1,111 @@
+package org.jared.structures.storage;
+
+/**
+ * A fixed length array of unsigned integers packed into {@code long} words, using only as many
+ * bits per entry as the largest stored value needs. Entries never span two words.
+ */
+public class PackedIntArray
+{
+    private final int size;
+
+    private int bitsPerEntry;
+    private int entriesPerWord;
+    private long mask;
+    private long[] data;
+
+    public PackedIntArray(int size, int bitsPerEntry)
+    {
+        if (size < 0)
+            throw new IllegalArgumentException("Size must not be negative: " + size);
+
+        this.size = size;
+        allocate(Math.max(1, Math.min(32, bitsPerEntry)));
+    }
+
+    public PackedIntArray(int size)
+    {
+        this(size, 1);
+    }
+
+    public int get(int index)
+    {
+        checkIndex(index);
+
+        int word = index / entriesPerWord;
+        int shift = (index - word * entriesPerWord) * bitsPerEntry;
+
+        return (int) ((data[word] >>> shift) & mask);
+    }
+
+    /**
+     * Stores a value, widening every entry first if the value does not fit in the current width.
+     */
+    public void set(int index, int value)
+    {
+        checkIndex(index);
+
+        if (value < 0)
+            throw new IllegalArgumentException("Only unsigned values can be stored: " + value);
+
+        if ((value & ~mask) != 0)
+            resize(bitsFor(value));
+
+        int word = index / entriesPerWord;
+        int shift = (index - word * entriesPerWord) * bitsPerEntry;
+
+        data[word] = (data[word] & ~(mask << shift)) | ((long) value << shift);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getBitsPerEntry()
+    {
+        return bitsPerEntry;
+    }
+
+    /**
+     * @return the approximate number of heap bytes held by this array
+     */
+    public long getRetainedBytes()
+    {
+        return 16L + 8L * data.length + 32L;
+    }
+
+    public static int bitsFor(int value)
+    {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(value));
+    }
+
+    private void resize(int newBitsPerEntry)
+    {
+        PackedIntArray resized = new PackedIntArray(size, newBitsPerEntry);
+        for (int i = 0; i < size; i++)
+        {
+            int value = get(i);
+            if (value != 0)
+                resized.set(i, value);
+        }
+
+        this.bitsPerEntry = resized.bitsPerEntry;
+        this.entriesPerWord = resized.entriesPerWord;
+        this.mask = resized.mask;
+        this.data = resized.data;
+    }
+
+    private void allocate(int bitsPerEntry)
+    {
+        this.bitsPerEntry = bitsPerEntry;
+        this.entriesPerWord = 64 / bitsPerEntry;
+        this.mask = (1L << bitsPerEntry) - 1;
+        this.data = new long[(size + entriesPerWord - 1) / entriesPerWord];
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+}
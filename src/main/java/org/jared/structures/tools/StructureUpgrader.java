@@ -0,0 +1,170 @@
+package org.jared.structures.tools;
+
+import org.jared.structures.nbt.CompoundTag;
+import org.jared.structures.nbt.util.LocalDataFixer;
+import org.jared.structures.nbt.util.NBTFiles;
+import org.jared.structures.nbt.util.NBTUpdater;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Upgrades every structure file below a directory to {@link NBTUpdater#TARGET_DATA_VERSION} in place, so that the
+ * server never has to run the DataFixer for them. Needs the server jar on the class path, but no running server.
+ *
+ * <pre>java -jar StructureTest-upgrader.jar &lt;directory&gt; [threads]</pre>
+ *
+ * <p>The build writes {@code StructureTest-upgrader.jar} next to the plugin jar. Its manifest names this class and
+ * adds {@code spigot.jar} next to the jar to the class path; the plugin jar itself has no class path.</p>
+ */
+public class StructureUpgrader
+{
+    private static final String EXTENSION = ".nbt";
+
+    private final int threads;
+
+    private final AtomicLong upgraded = new AtomicLong();
+    private final AtomicLong current = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    public StructureUpgrader(int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Upgrades all files below {@code directory}, printing a report when done.
+     *
+     * @return whether every file could be read and, if needed, upgraded
+     */
+    public boolean upgradeAll(Path directory) throws IOException
+    {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            files = paths.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().endsWith(EXTENSION)).collect(Collectors.toList());
+        }
+
+        System.out.println("Found " + files.size() + " structure files in " + directory);
+
+        long bootstrapStart = System.nanoTime();
+        NBTUpdater.bootstrap(Runnable::run, threads).join();
+        System.out.println("Built the DataFixer in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bootstrapStart) + "ms");
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            pool.invoke(new UpgradeTask(files, 0, files.size()));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        printReport(files.size(), System.nanoTime() - start);
+        return failures.isEmpty();
+    }
+
+    private void upgrade(Path path)
+    {
+        try
+        {
+            bytesRead.addAndGet(Files.size(path));
+
+            CompoundTag data = NBTFiles.read(path);
+            if (!NBTUpdater.needsUpdate(data.getInt("DataVersion")))
+            {
+                current.incrementAndGet();
+                return;
+            }
+
+            NBTFiles.write(path, NBTUpdater.updateData(data));
+            upgraded.incrementAndGet();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failures.add(path + ": " + e);
+        }
+    }
+
+    private void printReport(int files, long nanos)
+    {
+        double seconds = Math.max(nanos, 1) / 1e9;
+
+        System.out.println();
+        System.out.println(String.format("%-17s%d", "Upgraded:", upgraded.get()));
+        System.out.println(String.format("%-17s%d", "Already current:", current.get()));
+        System.out.println(String.format("%-17s%d", "Failed:", failures.size()));
+        System.out.println(String.format("%-17s%.2fs on %d threads", "Time:", seconds, threads));
+        System.out.println(String.format("%-17s%.1f files/s, %.2f MB/s compressed", "Throughput:", files / seconds, bytesRead.get() / seconds / (1024 * 1024)));
+
+        if (!failures.isEmpty())
+        {
+            System.out.println();
+            System.out.println("Failures:");
+            failures.forEach(failure -> System.out.println("  " + failure));
+        }
+    }
+
+    private class UpgradeTask extends RecursiveAction
+    {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+
+        private UpgradeTask(List<Path> files, int from, int to)
+        {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                upgrade(files.get(from));
+            }
+            else if (to - from > 1)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new UpgradeTask(files, from, middle), new UpgradeTask(files, middle, to));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: StructureUpgrader <directory> [threads]");
+            System.exit(2);
+        }
+
+        Path directory = Paths.get(args[0]);
+        if (!Files.isDirectory(directory))
+        {
+            System.err.println("Not a directory: " + directory);
+            System.exit(2);
+        }
+
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(LocalDataFixer.DEFAULT_BOOTSTRAP_THREADS, Runtime.getRuntime().availableProcessors());
+        boolean success = new StructureUpgrader(threads).upgradeAll(directory);
+
+        System.exit(success ? 0 : 1);
+    }
+}
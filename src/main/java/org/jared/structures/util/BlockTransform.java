@@ -0,0 +1,319 @@
+package org.jared.structures.util;
+
+import org.bukkit.Axis;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.*;
+import org.bukkit.block.data.type.Chest;
+import org.bukkit.block.data.type.Door;
+import org.bukkit.block.data.type.Stairs;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One of the 8 ways a structure can be oriented: a {@link Mirror} followed by a {@link Rotation}. Faces and rail
+ * shapes are remapped through tables built once per orientation, so transforming a palette entry only does lookups.
+ */
+public final class BlockTransform
+{
+    public static final BlockTransform IDENTITY;
+
+    /**
+     * The faces that make up each rail shape, in {@link Rail.Shape} order; ascending shapes pair their direction with
+     * {@code UP}.
+     */
+    private static final BlockFace[][] RAIL_FACES = {
+            {BlockFace.NORTH, BlockFace.SOUTH},
+            {BlockFace.EAST, BlockFace.WEST},
+            {BlockFace.EAST, BlockFace.UP},
+            {BlockFace.WEST, BlockFace.UP},
+            {BlockFace.NORTH, BlockFace.UP},
+            {BlockFace.SOUTH, BlockFace.UP},
+            {BlockFace.SOUTH, BlockFace.EAST},
+            {BlockFace.SOUTH, BlockFace.WEST},
+            {BlockFace.NORTH, BlockFace.WEST},
+            {BlockFace.NORTH, BlockFace.EAST}
+    };
+
+    private static final BlockTransform[] TRANSFORMS = new BlockTransform[Mirror.values().length * Rotation.values().length];
+
+    static
+    {
+        for (Mirror mirror : Mirror.values())
+        {
+            for (Rotation rotation : Rotation.values())
+            {
+                TRANSFORMS[mirror.ordinal() * Rotation.values().length + rotation.ordinal()] = new BlockTransform(rotation, mirror);
+            }
+        }
+
+        IDENTITY = of(Rotation.NONE, Mirror.NONE);
+    }
+
+    private final Rotation rotation;
+    private final Mirror mirror;
+    private final BlockFace[] faces;
+    private final Rail.Shape[] railShapes;
+
+    private BlockTransform(Rotation rotation, Mirror mirror)
+    {
+        this.rotation = rotation;
+        this.mirror = mirror;
+
+        this.faces = new BlockFace[BlockFace.values().length];
+        for (BlockFace face : BlockFace.values())
+        {
+            faces[face.ordinal()] = rotation.rotate(mirror.mirror(face));
+        }
+
+        //computed up front, so the shared instances never publish a lazily filled table
+        this.railShapes = computeRailShapes();
+    }
+
+    public static BlockTransform of(Rotation rotation, Mirror mirror)
+    {
+        return TRANSFORMS[mirror.ordinal() * Rotation.values().length + rotation.ordinal()];
+    }
+
+    public Rotation getRotation()
+    {
+        return rotation;
+    }
+
+    public Mirror getMirror()
+    {
+        return mirror;
+    }
+
+    public boolean isIdentity()
+    {
+        return rotation == Rotation.NONE && mirror == Mirror.NONE;
+    }
+
+    /**
+     * @return whether the transform changes the handedness of blocks, e.g. the hinge side of doors
+     */
+    public boolean isMirrored()
+    {
+        return mirror != Mirror.NONE;
+    }
+
+    /**
+     * @return the transform that applies this one and then {@code next}
+     */
+    public BlockTransform then(BlockTransform next)
+    {
+        //the orientations form a closed group, so the result is whichever one maps both unit vectors the same way
+        int xx = next.transformX(transformX(1, 0), transformZ(1, 0));
+        int xz = next.transformZ(transformX(1, 0), transformZ(1, 0));
+        int zx = next.transformX(transformX(0, 1), transformZ(0, 1));
+        int zz = next.transformZ(transformX(0, 1), transformZ(0, 1));
+
+        for (BlockTransform candidate : TRANSFORMS)
+        {
+            if (candidate.transformX(1, 0) == xx && candidate.transformZ(1, 0) == xz && candidate.transformX(0, 1) == zx && candidate.transformZ(0, 1) == zz)
+                return candidate;
+        }
+
+        throw new IllegalStateException("No transform matches " + this + " followed by " + next);
+    }
+
+    public int transformX(int x, int z)
+    {
+        return rotation.rotateX(mirror.mirrorX(x), mirror.mirrorZ(z));
+    }
+
+    public int transformZ(int x, int z)
+    {
+        return rotation.rotateZ(mirror.mirrorX(x), mirror.mirrorZ(z));
+    }
+
+    public double transformX(double x, double z)
+    {
+        return rotation.rotateX(mirror.mirrorX(x), mirror.mirrorZ(z));
+    }
+
+    public double transformZ(double x, double z)
+    {
+        return rotation.rotateZ(mirror.mirrorX(x), mirror.mirrorZ(z));
+    }
+
+    /**
+     * Transforms an entity's yaw, where 0 faces south and 90 faces west.
+     *
+     * @return the transformed yaw in {@code [0, 360)}
+     */
+    public float transformYaw(float yaw)
+    {
+        if (mirror == Mirror.LEFT_RIGHT)
+            yaw = 180.0F - yaw;
+        else if (mirror == Mirror.FRONT_BACK)
+            yaw = -yaw;
+
+        yaw = (yaw + rotation.getAngle()) % 360.0F;
+        return yaw < 0.0F ? yaw + 360.0F : yaw;
+    }
+
+    public BlockFace transform(BlockFace face)
+    {
+        return faces[face.ordinal()];
+    }
+
+    /**
+     * Returns a transformed copy of the given data, or the same instance if the transform does not change it.
+     */
+    public BlockData transform(BlockData blockData)
+    {
+        if (isIdentity())
+            return blockData;
+
+        BlockData transformed = blockData.clone();
+        boolean changed = false;
+
+        if (transformed instanceof Directional)
+        {
+            Directional directional = (Directional) transformed;
+            BlockFace facing = transform(directional.getFacing());
+            if (facing != directional.getFacing() && directional.getFaces().contains(facing))
+            {
+                directional.setFacing(facing);
+                changed = true;
+            }
+        }
+
+        if (transformed instanceof Rotatable)
+        {
+            Rotatable rotatable = (Rotatable) transformed;
+            BlockFace face = transform(rotatable.getRotation());
+            if (face != rotatable.getRotation())
+            {
+                rotatable.setRotation(face);
+                changed = true;
+            }
+        }
+
+        if (transformed instanceof Orientable)
+        {
+            Orientable orientable = (Orientable) transformed;
+            Axis axis = rotation.rotate(orientable.getAxis());
+            if (axis != orientable.getAxis() && orientable.getAxes().contains(axis))
+            {
+                orientable.setAxis(axis);
+                changed = true;
+            }
+        }
+
+        if (transformed instanceof MultipleFacing)
+            changed |= transformFaces((MultipleFacing) transformed);
+
+        if (transformed instanceof Rail)
+        {
+            Rail rail = (Rail) transformed;
+            Rail.Shape shape = railShapes[rail.getShape().ordinal()];
+            if (shape != rail.getShape() && rail.getShapes().contains(shape))
+            {
+                rail.setShape(shape);
+                changed = true;
+            }
+        }
+
+        if (isMirrored())
+            changed |= mirrorHandedness(transformed);
+
+        return changed ? transformed : blockData;
+    }
+
+    private boolean transformFaces(MultipleFacing multipleFacing)
+    {
+        Set<BlockFace> present = multipleFacing.getFaces();
+        Set<BlockFace> transformed = EnumSet.noneOf(BlockFace.class);
+        for (BlockFace face : present)
+        {
+            transformed.add(transform(face));
+        }
+
+        if (transformed.equals(present))
+            return false;
+
+        for (BlockFace face : multipleFacing.getAllowedFaces())
+        {
+            multipleFacing.setFace(face, transformed.contains(face));
+        }
+
+        return true;
+    }
+
+    /**
+     * Left and right are relative to the facing, so a reflection swaps them even where the facing stays the same.
+     */
+    private static boolean mirrorHandedness(BlockData blockData)
+    {
+        if (blockData instanceof Stairs)
+        {
+            Stairs stairs = (Stairs) blockData;
+            switch (stairs.getShape())
+            {
+                case INNER_LEFT:
+                    stairs.setShape(Stairs.Shape.INNER_RIGHT);
+                    return true;
+                case INNER_RIGHT:
+                    stairs.setShape(Stairs.Shape.INNER_LEFT);
+                    return true;
+                case OUTER_LEFT:
+                    stairs.setShape(Stairs.Shape.OUTER_RIGHT);
+                    return true;
+                case OUTER_RIGHT:
+                    stairs.setShape(Stairs.Shape.OUTER_LEFT);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        if (blockData instanceof Door)
+        {
+            Door door = (Door) blockData;
+            door.setHinge(door.getHinge() == Door.Hinge.LEFT ? Door.Hinge.RIGHT : Door.Hinge.LEFT);
+            return true;
+        }
+
+        if (blockData instanceof Chest)
+        {
+            Chest chest = (Chest) blockData;
+            if (chest.getType() == Chest.Type.SINGLE)
+                return false;
+
+            chest.setType(chest.getType() == Chest.Type.LEFT ? Chest.Type.RIGHT : Chest.Type.LEFT);
+            return true;
+        }
+
+        return false;
+    }
+
+    private Rail.Shape[] computeRailShapes()
+    {
+        Rail.Shape[] values = Rail.Shape.values();
+        Rail.Shape[] shapes = new Rail.Shape[values.length];
+        for (Rail.Shape shape : values)
+        {
+            shapes[shape.ordinal()] = shape;
+
+            BlockFace first = transform(RAIL_FACES[shape.ordinal()][0]);
+            BlockFace second = transform(RAIL_FACES[shape.ordinal()][1]);
+            for (Rail.Shape candidate : values)
+            {
+                BlockFace[] candidateFaces = RAIL_FACES[candidate.ordinal()];
+                if ((candidateFaces[0] == first && candidateFaces[1] == second) || (candidateFaces[0] == second && candidateFaces[1] == first))
+                    shapes[shape.ordinal()] = candidate;
+            }
+        }
+
+        return shapes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BlockTransform{rotation=" + rotation + ", mirror=" + mirror + "}";
+    }
+}
@@ -0,0 +1,54 @@
+package org.jared.structures.util;
+
+import org.bukkit.block.BlockFace;
+
+/**
+ * Reflections across a vertical plane through the origin, named like vanilla's: {@link #LEFT_RIGHT} swaps north and
+ * south, {@link #FRONT_BACK} swaps east and west.
+ */
+public enum Mirror
+{
+    NONE,
+    LEFT_RIGHT,
+    FRONT_BACK;
+
+    private static final BlockFace[][] FACES = new BlockFace[values().length][];
+
+    static
+    {
+        for (Mirror mirror : values())
+        {
+            BlockFace[] faces = new BlockFace[BlockFace.values().length];
+            for (BlockFace face : BlockFace.values())
+            {
+                faces[face.ordinal()] = VectorUtil.getFace(mirror.mirrorX(face.getModX()), face.getModY(), mirror.mirrorZ(face.getModZ()));
+            }
+            FACES[mirror.ordinal()] = faces;
+        }
+    }
+
+    public int mirrorX(int x)
+    {
+        return this == FRONT_BACK ? -x : x;
+    }
+
+    public int mirrorZ(int z)
+    {
+        return this == LEFT_RIGHT ? -z : z;
+    }
+
+    public double mirrorX(double x)
+    {
+        return this == FRONT_BACK ? 0.0 - x : x;
+    }
+
+    public double mirrorZ(double z)
+    {
+        return this == LEFT_RIGHT ? 0.0 - z : z;
+    }
+
+    public BlockFace mirror(BlockFace face)
+    {
+        return FACES[ordinal()][face.ordinal()];
+    }
+}
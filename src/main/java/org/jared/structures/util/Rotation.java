@@ -0,0 +1,148 @@
+package org.jared.structures.util;
+
+import org.bukkit.Axis;
+import org.bukkit.block.BlockFace;
+
+/**
+ * Clockwise quarter turns around the Y axis, seen from above. Positions and faces are rotated with integer math and
+ * precomputed tables, so results are exact.
+ */
+public enum Rotation
+{
+    NONE,
+    CLOCKWISE_90,
+    CLOCKWISE_180,
+    COUNTERCLOCKWISE_90;
+
+    private static final Rotation[] VALUES = values();
+    private static final BlockFace[][] FACES = new BlockFace[VALUES.length][];
+
+    static
+    {
+        for (Rotation rotation : VALUES)
+        {
+            BlockFace[] faces = new BlockFace[BlockFace.values().length];
+            for (BlockFace face : BlockFace.values())
+            {
+                faces[face.ordinal()] = VectorUtil.getFace(rotation.rotateX(face.getModX(), face.getModZ()), face.getModY(), rotation.rotateZ(face.getModX(), face.getModZ()));
+            }
+            FACES[rotation.ordinal()] = faces;
+        }
+    }
+
+    /**
+     * @param angle a multiple of 90 degrees, clockwise
+     */
+    public static Rotation fromAngle(int angle)
+    {
+        if (angle % 90 != 0)
+            throw new IllegalArgumentException("Only right angles are supported: " + angle);
+
+        return fromTurns(angle / 90);
+    }
+
+    public static Rotation fromTurns(int turns)
+    {
+        return VALUES[turns & 3];
+    }
+
+    public int getTurns()
+    {
+        return ordinal();
+    }
+
+    public int getAngle()
+    {
+        return ordinal() * 90;
+    }
+
+    public Rotation add(Rotation rotation)
+    {
+        return fromTurns(ordinal() + rotation.ordinal());
+    }
+
+    public Rotation inverse()
+    {
+        return fromTurns(-ordinal());
+    }
+
+    public int rotateX(int x, int z)
+    {
+        switch (this)
+        {
+            case CLOCKWISE_90:
+                return -z;
+            case CLOCKWISE_180:
+                return -x;
+            case COUNTERCLOCKWISE_90:
+                return z;
+            default:
+                return x;
+        }
+    }
+
+    public int rotateZ(int x, int z)
+    {
+        switch (this)
+        {
+            case CLOCKWISE_90:
+                return x;
+            case CLOCKWISE_180:
+                return -z;
+            case COUNTERCLOCKWISE_90:
+                return -x;
+            default:
+                return z;
+        }
+    }
+
+    /**
+     * Like {@link #rotateX(int, int)}; negation is done as {@code 0.0 - value}, so a zero never turns into
+     * {@code -0.0}, which would hash differently.
+     */
+    public double rotateX(double x, double z)
+    {
+        switch (this)
+        {
+            case CLOCKWISE_90:
+                return 0.0 - z;
+            case CLOCKWISE_180:
+                return 0.0 - x;
+            case COUNTERCLOCKWISE_90:
+                return z;
+            default:
+                return x;
+        }
+    }
+
+    public double rotateZ(double x, double z)
+    {
+        switch (this)
+        {
+            case CLOCKWISE_90:
+                return x;
+            case CLOCKWISE_180:
+                return 0.0 - z;
+            case COUNTERCLOCKWISE_90:
+                return 0.0 - x;
+            default:
+                return z;
+        }
+    }
+
+    /**
+     * Rotates any of the 16 horizontal directions; {@code UP}, {@code DOWN} and {@code SELF} are left as they are.
+     */
+    public BlockFace rotate(BlockFace face)
+    {
+        return FACES[ordinal()][face.ordinal()];
+    }
+
+    public Axis rotate(Axis axis)
+    {
+        if ((ordinal() & 1) == 0 || axis == Axis.Y)
+            return axis;
+
+        return axis == Axis.X ? Axis.Z : Axis.X;
+    }
+}
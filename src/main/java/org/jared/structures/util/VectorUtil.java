@@ -5,6 +5,8 @@ import org.bukkit.util.Vector;
 
 public class VectorUtil
 {
+    private static final BlockFace[] FACES = BlockFace.values();
+
     public static Vector toVector(BlockFace blockFace)
     {
         return new Vector(blockFace.getModX(), blockFace.getModY(), blockFace.getModZ());
@@ -12,18 +14,41 @@ public class VectorUtil
 
     public static BlockFace fromVector(Vector vector)
     {
-        for (BlockFace blockFace : BlockFace.values())
+        int x = vector.getBlockX();
+        int y = vector.getBlockY();
+        int z = vector.getBlockZ();
+        if (x != vector.getX() || y != vector.getY() || z != vector.getZ())
+            return null;
+
+        return getFace(x, y, z);
+    }
+
+    /**
+     * @return the face with exactly the given modifiers, or {@code null} if there is none
+     */
+    public static BlockFace getFace(int modX, int modY, int modZ)
+    {
+        for (BlockFace blockFace : FACES)
         {
-            if (vector.equals(new Vector(blockFace.getModX(), blockFace.getModY(), blockFace.getModZ())))
+            if (blockFace.getModX() == modX && blockFace.getModY() == modY && blockFace.getModZ() == modZ)
                 return blockFace;
         }
 
         return null;
     }
 
-
+    /**
+     * Rotates clockwise around the Y axis. Right angles are rotated exactly, so a rotated block position is still a
+     * block position.
+     */
     public static Vector rotateVector(Vector vector, int angle)
     {
+        if (angle % 90 == 0)
+        {
+            Rotation rotation = Rotation.fromAngle(angle);
+            return new Vector(rotation.rotateX(vector.getX(), vector.getZ()), vector.getY(), rotation.rotateZ(vector.getX(), vector.getZ()));
+        }
+
         double rad = Math.toRadians(angle);
 
         double currentX = vector.getX();
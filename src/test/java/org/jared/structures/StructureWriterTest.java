@@ -0,0 +1,154 @@
+package org.jared.structures;
+
+import com.google.common.collect.Maps;
+import org.bukkit.util.Vector;
+import org.jared.structures.nbt.*;
+import org.jared.structures.storage.BlockEntityTable;
+import org.jared.structures.storage.BlockStorage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StructureWriterTest
+{
+    private static final String CHEST = "minecraft:chest[facing=north,type=single,waterlogged=false]";
+
+    @Test
+    public void blocksAndBlockEntitiesSurviveARoundTrip() throws IOException
+    {
+        BlockStorage blocks = new BlockStorage(3, 2, 2);
+        blocks.set(0, 0, 0, 1);
+        blocks.set(2, 0, 1, 2);
+        blocks.set(1, 1, 0, 3);
+        blocks.set(2, 1, 1, 1);
+
+        BlockEntityTable blockEntities = new BlockEntityTable();
+        blockEntities.put(blocks.getIndex(2, 0, 1), createChest());
+        blockEntities.compact();
+
+        //ids 1 and 3 have the same state, as after a rotation, and share a palette entry in the file
+        String[] states = {null, "minecraft:stone", CHEST, "minecraft:stone"};
+        CompoundTag tag = new StructureWriter(blocks, blockEntities, states).createTag(new int[3], Collections.<Structure.EntityInfo>emptyList());
+
+        StructureReader reader = read(tag);
+        assertArrayEquals(new int[]{3, 2, 2}, reader.getSize());
+        assertEquals(2, reader.getPalette().getValue().size());
+
+        BlockStorage read = reader.getBlocks();
+        assertEquals(4, read.getBlockCount());
+        assertEquals(BlockStorage.EMPTY, read.get(1, 0, 0));
+        assertEquals("minecraft:stone", getState(reader, read.get(0, 0, 0)));
+        assertEquals(sortedProperties(CHEST), sortedProperties(getState(reader, read.get(2, 0, 1))));
+        assertEquals("minecraft:stone", getState(reader, read.get(1, 1, 0)));
+        assertEquals(read.get(0, 0, 0), read.get(2, 1, 1));
+
+        BlockEntityTable readEntities = reader.getBlockEntities();
+        assertEquals(1, readEntities.size());
+        assertTrue(readEntities.find(read.getIndex(0, 0, 0)) < 0);
+
+        CompoundTag chest = readEntities.getTag(readEntities.find(read.getIndex(2, 0, 1)));
+        assertEquals("minecraft:chest", chest.getString("id"));
+        List<Tag> items = chest.getList("Items");
+        assertEquals(2, items.size());
+        assertEquals("minecraft:diamond", ((CompoundTag) items.get(1)).getString("id"));
+        assertEquals(13, ((CompoundTag) items.get(1)).getByte("Slot"));
+        assertEquals(3, ((CompoundTag) items.get(1)).getByte("Count"));
+    }
+
+    @Test
+    public void entitiesAreMovedByTheOrigin() throws IOException
+    {
+        Map<String, Tag> nbt = Maps.newHashMap();
+        nbt.put("id", new StringTag("minecraft:armor_stand"));
+        Structure.EntityInfo entity = new Structure.EntityInfo(new Vector(-1.5, 0.0, 2.25), new Vector(-2, 0, 2), new CompoundTag(nbt));
+
+        BlockStorage blocks = new BlockStorage(4, 1, 4);
+        blocks.set(0, 0, 0, 1);
+        CompoundTag tag = new StructureWriter(blocks, new BlockEntityTable(), new String[]{null, "minecraft:stone"}).createTag(new int[]{-3, 0, 1}, Collections.singletonList(entity));
+
+        List<Tag> entities = read(tag).getEntities().getValue();
+        assertEquals(1, entities.size());
+
+        CompoundTag read = (CompoundTag) entities.get(0);
+        assertArrayEquals(new double[]{1.5, 0.0, 1.25}, ((DoubleListTag) read.getListTag("pos")).getDoubleValues(), 0.0);
+        assertArrayEquals(new int[]{1, 0, 1}, ((IntListTag) read.getListTag("blockPos")).getIntValues());
+        assertEquals("minecraft:armor_stand", ((CompoundTag) read.getValue().get("nbt")).getString("id"));
+    }
+
+    @Test
+    public void stateStringsAreParsedAndFormattedBack()
+    {
+        CompoundTag state = StructureWriter.parseState(CHEST);
+        assertEquals("minecraft:chest", state.getString("Name"));
+        assertEquals("north", ((CompoundTag) state.getValue().get("Properties")).getString("facing"));
+
+        String formatted = StructureWriter.toStateString(state);
+        assertTrue(formatted.startsWith("minecraft:chest["));
+        assertEquals(Arrays.asList("facing=north", "type=single", "waterlogged=false"), sortedProperties(formatted));
+
+        CompoundTag plain = StructureWriter.parseState("minecraft:stone");
+        assertFalse(plain.containsKey("Properties"));
+        assertEquals("minecraft:stone", StructureWriter.toStateString(plain));
+    }
+
+    private static CompoundTag createChest()
+    {
+        Map<String, Tag> stone = Maps.newHashMap();
+        stone.put("Slot", new ByteTag((byte) 0));
+        stone.put("id", new StringTag("minecraft:stone"));
+        stone.put("Count", new ByteTag((byte) 64));
+
+        Map<String, Tag> diamond = Maps.newHashMap();
+        diamond.put("Slot", new ByteTag((byte) 13));
+        diamond.put("id", new StringTag("minecraft:diamond"));
+        diamond.put("Count", new ByteTag((byte) 3));
+
+        Map<String, Tag> chest = Maps.newHashMap();
+        chest.put("id", new StringTag("minecraft:chest"));
+        chest.put("Items", new ListTag(CompoundTag.class, Arrays.<Tag>asList(new CompoundTag(stone), new CompoundTag(diamond))));
+        return new CompoundTag(chest);
+    }
+
+    private static String getState(StructureReader reader, int id)
+    {
+        return StructureWriter.toStateString((CompoundTag) reader.getPalette().getValue().get(id - 1));
+    }
+
+    /**
+     * Parsed states keep their properties in a hash map, so only the set of properties is compared.
+     */
+    private static List<String> sortedProperties(String state)
+    {
+        List<String> properties = Arrays.asList(state.substring(state.indexOf('[') + 1, state.length() - 1).split(","));
+        Collections.sort(properties);
+        return properties;
+    }
+
+    private static StructureReader read(CompoundTag tag) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTOutputStream out = new NBTOutputStream(bytes))
+        {
+            out.writeNamedTag("", tag);
+        }
+
+        StructureReader reader = new StructureReader();
+        try (NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(bytes.toByteArray()), false))
+        {
+            in.accept(reader);
+        }
+
+        return reader;
+    }
+}
@@ -0,0 +1,156 @@
+package org.jared.structures.nbt;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyTagMapTest
+{
+    @Test
+    public void findsChildrenByName() throws IOException
+    {
+        Map<String, Tag> children = read(createCompound());
+
+        assertEquals(5, children.size());
+        assertEquals("minecraft:chest", ((StringTag) children.get("id")).getValue());
+        assertEquals(7, ((IntTag) children.get("x")).getValue().intValue());
+        assertEquals(2, ((IntTag) children.get("ids")).getValue().intValue());
+        assertEquals("é", ((StringTag) children.get("näme")).getValue());
+        assertTrue(children.containsKey("Items"));
+    }
+
+    @Test
+    public void missingNamesAreNotFound() throws IOException
+    {
+        Map<String, Tag> children = read(createCompound());
+
+        assertNull(children.get("i"));
+        assertNull(children.get("idx"));
+        assertNull(children.get("name"));
+        assertNull(children.get(""));
+        assertNull(children.get(1));
+        assertFalse(children.containsKey("Item"));
+    }
+
+    @Test
+    public void childrenAreDecodedOnce() throws IOException
+    {
+        Map<String, Tag> children = read(createCompound());
+
+        Tag items = children.get("Items");
+        assertSame(items, children.get("Items"));
+        assertEquals(1, ((ListTag) items).getValue().size());
+        assertEquals(3, ((CompoundTag) ((ListTag) items).getValue().get(0)).getByte("Slot"));
+    }
+
+    @Test
+    public void entriesComeInFileOrder() throws IOException
+    {
+        Iterator<Map.Entry<String, Tag>> entries = read(createCompound()).entrySet().iterator();
+
+        assertEquals("id", entries.next().getKey());
+        assertEquals("x", entries.next().getKey());
+        assertEquals("ids", entries.next().getKey());
+        assertEquals("näme", entries.next().getKey());
+        Map.Entry<String, Tag> last = entries.next();
+        assertEquals("Items", last.getKey());
+        assertTrue(last.getValue() instanceof ListTag);
+        assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void aDuplicatedNameResolvesToItsLastValue() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(NBTConstants.TYPE_COMPOUND);
+        out.writeUTF("");
+        writeInt(out, "a", 1);
+        writeInt(out, "a", 2);
+        out.writeByte(NBTConstants.TYPE_END);
+
+        Map<String, Tag> children = read(bytes.toByteArray());
+        assertEquals(2, ((IntTag) children.get("a")).getValue().intValue());
+    }
+
+    @Test
+    public void littleEndianNamesAreFound() throws IOException
+    {
+        Map<String, Tag> values = Maps.newHashMap();
+        values.put("name", new StringTag("value"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTOutputStream out = new NBTOutputStream(bytes, ByteOrder.LITTLE_ENDIAN))
+        {
+            out.writeNamedTag("", new CompoundTag(values));
+        }
+
+        try (NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(bytes.toByteArray()), false, ByteOrder.LITTLE_ENDIAN, true))
+        {
+            CompoundTag tag = (CompoundTag) in.readNamedTag().getTag();
+            assertEquals("value", tag.getString("name"));
+        }
+    }
+
+    /**
+     * A compound with names that share prefixes and a name outside of ASCII, written in a known order.
+     */
+    private static byte[] createCompound() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(NBTConstants.TYPE_COMPOUND);
+        out.writeUTF("");
+
+        out.writeByte(NBTConstants.TYPE_STRING);
+        out.writeUTF("id");
+        out.writeUTF("minecraft:chest");
+
+        writeInt(out, "x", 7);
+        writeInt(out, "ids", 2);
+
+        out.writeByte(NBTConstants.TYPE_STRING);
+        out.writeUTF("näme");
+        out.writeUTF("é");
+
+        out.writeByte(NBTConstants.TYPE_LIST);
+        out.writeUTF("Items");
+        out.writeByte(NBTConstants.TYPE_COMPOUND);
+        out.writeInt(1);
+        out.writeByte(NBTConstants.TYPE_BYTE);
+        out.writeUTF("Slot");
+        out.writeByte(3);
+        out.writeByte(NBTConstants.TYPE_END);
+
+        out.writeByte(NBTConstants.TYPE_END);
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(DataOutputStream out, String name, int value) throws IOException
+    {
+        out.writeByte(NBTConstants.TYPE_INT);
+        out.writeUTF(name);
+        out.writeInt(value);
+    }
+
+    private static Map<String, Tag> read(byte[] bytes) throws IOException
+    {
+        try (NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(bytes), false, ByteOrder.BIG_ENDIAN, true))
+        {
+            return ((CompoundTag) in.readNamedTag().getTag()).getValue();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.jared.structures.nbt;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NBTStreamTest
+{
+    @Test
+    public void everyTagTypeSurvivesARoundTrip() throws IOException
+    {
+        CompoundTag tag = createTag();
+        byte[] bytes = write(tag, ByteOrder.BIG_ENDIAN);
+
+        assertEquals(NBTOutputStream.sizeOf(tag), bytes.length);
+        assertTagEquals(read(bytes, ByteOrder.BIG_ENDIAN, false));
+    }
+
+    @Test
+    public void everyTagTypeSurvivesALazyRoundTrip() throws IOException
+    {
+        assertTagEquals(read(write(createTag(), ByteOrder.BIG_ENDIAN), ByteOrder.BIG_ENDIAN, true));
+    }
+
+    @Test
+    public void everyTagTypeSurvivesALittleEndianRoundTrip() throws IOException
+    {
+        assertTagEquals(read(write(createTag(), ByteOrder.LITTLE_ENDIAN), ByteOrder.LITTLE_ENDIAN, false));
+    }
+
+    @Test
+    public void longArrayLengthIsAnInt() throws IOException
+    {
+        Map<String, Tag> values = Maps.newHashMap();
+        values.put("a", new LongArrayTag(new long[]{1L, -2L}));
+        byte[] bytes = write(new CompoundTag(values), ByteOrder.BIG_ENDIAN);
+
+        //root type, empty name, child type and name, then the length and the values
+        int offset = 1 + 2 + 1 + 2 + 1;
+        assertEquals(offset + 4 + 2 * 8 + 1, bytes.length);
+        assertArrayEquals(new byte[]{0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 1}, Arrays.copyOfRange(bytes, offset, offset + 12));
+
+        assertArrayEquals(new long[]{1L, -2L}, read(bytes, ByteOrder.BIG_ENDIAN, false).getLongArray("a"));
+    }
+
+    @Test
+    public void numericListsAreReadIntoPrimitiveArrays() throws IOException
+    {
+        Map<String, Tag> values = Maps.newHashMap();
+        values.put("ints", new ListTag(IntTag.class, Arrays.<Tag>asList(new IntTag(1), new IntTag(-2))));
+        values.put("floats", new ListTag(FloatTag.class, Arrays.<Tag>asList(new FloatTag(0.5F))));
+        values.put("doubles", new ListTag(DoubleTag.class, Arrays.<Tag>asList(new DoubleTag(1.5), new DoubleTag(-0.25))));
+        CompoundTag read = read(write(new CompoundTag(values), ByteOrder.BIG_ENDIAN), ByteOrder.BIG_ENDIAN, false);
+
+        IntListTag ints = (IntListTag) read.getListTag("ints");
+        assertArrayEquals(new int[]{1, -2}, ints.getIntValues());
+        assertEquals(IntTag.class, ints.getType());
+        assertEquals(-2, ((IntTag) ints.getValue().get(1)).getValue().intValue());
+
+        FloatListTag floats = (FloatListTag) read.getListTag("floats");
+        assertArrayEquals(new float[]{0.5F}, floats.getFloatValues(), 0.0F);
+        assertEquals(FloatTag.class, floats.getType());
+
+        DoubleListTag doubles = (DoubleListTag) read.getListTag("doubles");
+        assertArrayEquals(new double[]{1.5, -0.25}, doubles.getDoubleValues(), 0.0);
+        assertEquals(0.0, doubles.asDouble(1) + 0.25, 0.0);
+        assertEquals(DoubleTag.class, doubles.getType());
+    }
+
+    @Test
+    public void readPayloadDecodesARawCompound() throws IOException
+    {
+        CompoundTag tag = createTag();
+        byte[] bytes = write(tag, ByteOrder.BIG_ENDIAN);
+
+        //the payload follows the root type and its empty name
+        byte[] payload = Arrays.copyOfRange(bytes, 3, bytes.length);
+        assertTagEquals((CompoundTag) NBTInputStream.readPayload(NBTConstants.TYPE_COMPOUND, payload, ByteOrder.BIG_ENDIAN));
+    }
+
+    private static CompoundTag createTag()
+    {
+        Map<String, Tag> item = Maps.newHashMap();
+        item.put("id", new StringTag("minecraft:stone"));
+        item.put("Count", new ByteTag((byte) 64));
+
+        Map<String, Tag> values = Maps.newHashMap();
+        values.put("byte", new ByteTag((byte) -1));
+        values.put("short", new ShortTag((short) 300));
+        values.put("int", new IntTag(-70000));
+        values.put("long", new LongTag(Long.MIN_VALUE));
+        values.put("float", new FloatTag(1.25F));
+        values.put("double", new DoubleTag(-2.5));
+        values.put("bytes", new ByteArrayTag(new byte[]{1, 2, 3}));
+        values.put("string", new StringTag("héllo"));
+        values.put("intArray", new IntArrayTag(new int[]{4, 5}));
+        values.put("longArray", new LongArrayTag(new long[]{Long.MAX_VALUE, 0L, -1L}));
+        values.put("intList", new IntListTag(new int[]{1, 2, 3}));
+        values.put("floatList", new FloatListTag(new float[]{0.0F, 90.0F}));
+        values.put("doubleList", new DoubleListTag(new double[]{0.5, 64.0, -0.5}));
+        values.put("compounds", new ListTag(CompoundTag.class, Arrays.<Tag>asList(new CompoundTag(item))));
+        values.put("empty", new ListTag(EndTag.class, Collections.<Tag>emptyList()));
+        return new CompoundTag(values);
+    }
+
+    private static void assertTagEquals(CompoundTag tag)
+    {
+        assertEquals(-1, tag.getByte("byte"));
+        assertEquals(300, tag.getShort("short"));
+        assertEquals(-70000, tag.getInt("int"));
+        assertEquals(Long.MIN_VALUE, tag.getLong("long"));
+        assertEquals(1.25F, tag.getFloat("float"), 0.0F);
+        assertEquals(-2.5, tag.getDouble("double"), 0.0);
+        assertArrayEquals(new byte[]{1, 2, 3}, tag.getByteArray("bytes"));
+        assertEquals("héllo", tag.getString("string"));
+        assertArrayEquals(new int[]{4, 5}, tag.getIntArray("intArray"));
+        assertArrayEquals(new long[]{Long.MAX_VALUE, 0L, -1L}, tag.getLongArray("longArray"));
+        assertArrayEquals(new int[]{1, 2, 3}, ((IntListTag) tag.getListTag("intList")).getIntValues());
+        assertArrayEquals(new float[]{0.0F, 90.0F}, ((FloatListTag) tag.getListTag("floatList")).getFloatValues(), 0.0F);
+        assertArrayEquals(new double[]{0.5, 64.0, -0.5}, ((DoubleListTag) tag.getListTag("doubleList")).getDoubleValues(), 0.0);
+
+        List<Tag> compounds = tag.getList("compounds");
+        assertEquals(1, compounds.size());
+        assertEquals("minecraft:stone", ((CompoundTag) compounds.get(0)).getString("id"));
+        assertEquals(64, ((CompoundTag) compounds.get(0)).getByte("Count"));
+
+        assertTrue(tag.getList("empty").isEmpty());
+        assertEquals(15, tag.getValue().size());
+    }
+
+    private static byte[] write(CompoundTag tag, ByteOrder order) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTOutputStream out = new NBTOutputStream(bytes, order))
+        {
+            out.writeNamedTag("", tag);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static CompoundTag read(byte[] bytes, ByteOrder order, boolean lazy) throws IOException
+    {
+        try (NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(bytes), false, order, lazy))
+        {
+            return (CompoundTag) in.readNamedTag().getTag();
+        }
+    }
+}
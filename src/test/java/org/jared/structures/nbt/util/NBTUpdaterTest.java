@@ -0,0 +1,144 @@
+package org.jared.structures.nbt.util;
+
+import net.minecraft.server.v1_13_R2.NBTTagByte;
+import net.minecraft.server.v1_13_R2.NBTTagCompound;
+import net.minecraft.server.v1_13_R2.NBTTagList;
+import net.minecraft.server.v1_13_R2.NBTTagString;
+import org.jared.structures.nbt.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class NBTUpdaterTest
+{
+    @Test
+    public void capturedChestCanBeSavedAndReadBack() throws IOException
+    {
+        NBTTagCompound item = new NBTTagCompound();
+        item.set("Slot", new NBTTagByte((byte) 3));
+        item.set("id", new NBTTagString("minecraft:stone"));
+        item.set("Count", new NBTTagByte((byte) 5));
+
+        NBTTagList items = new NBTTagList();
+        items.add(item);
+
+        NBTTagCompound chest = new NBTTagCompound();
+        chest.set("id", new NBTTagString("minecraft:chest"));
+        chest.set("Items", items);
+        chest.set("Empty", new NBTTagList());
+
+        CompoundTag captured = (CompoundTag) NBTUpdater.fromNMS(chest);
+        assertEquals(CompoundTag.class, captured.getListTag("Items").getType());
+        assertEquals(EndTag.class, captured.getListTag("Empty").getType());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTOutputStream out = new NBTOutputStream(bytes))
+        {
+            out.writeNamedTag("", captured);
+        }
+
+        CompoundTag read;
+        try (NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(bytes.toByteArray()), false))
+        {
+            read = (CompoundTag) in.readNamedTag().getTag();
+        }
+
+        ListTag readItems = read.getListTag("Items");
+        assertEquals(1, readItems.getValue().size());
+        CompoundTag readItem = (CompoundTag) readItems.getValue().get(0);
+        assertEquals("minecraft:chest", read.getString("id"));
+        assertEquals("minecraft:stone", readItem.getString("id"));
+        assertEquals(3, readItem.getByte("Slot"));
+        assertEquals(5, readItem.getByte("Count"));
+        assertEquals(0, read.getListTag("Empty").getValue().size());
+    }
+
+    @Test
+    public void ourTagsAndNMSTagsAreUpgradedAlike()
+    {
+        CompoundTag updated = NBTUpdater.updateData(createLegacyStructure(), false);
+        CompoundTag nmsUpdated = NBTUpdater.updateData(createLegacyStructure(), true);
+
+        assertEquals(NBTUpdater.TARGET_DATA_VERSION, updated.getInt("DataVersion"));
+        assertEquals("minecraft:granite", ((CompoundTag) updated.getList("palette").get(0)).getString("Name"));
+        CompoundTag chest = (CompoundTag) ((CompoundTag) updated.getList("blocks").get(1)).getValue().get("nbt");
+        assertEquals("minecraft:red_wool", ((CompoundTag) chest.getList("Items").get(0)).getString("id"));
+
+        //compared as NMS tags, whose equality covers the whole tree whichever list classes our tags use
+        assertEquals(NBTUpdater.toNMS(nmsUpdated), NBTUpdater.toNMS(updated));
+    }
+
+    /**
+     * A 1.12.2 structure with a flattened block, a chest holding a flattened item and an item frame.
+     */
+    private static CompoundTag createLegacyStructure()
+    {
+        CompoundTag granite = new CompoundTag();
+        granite.set("Name", new StringTag("minecraft:stone"));
+        granite.set("Properties", createProperties("variant", "granite"));
+
+        CompoundTag chestState = new CompoundTag();
+        chestState.set("Name", new StringTag("minecraft:chest"));
+        chestState.set("Properties", createProperties("facing", "north"));
+
+        CompoundTag wool = new CompoundTag();
+        wool.set("Name", new StringTag("minecraft:wool"));
+        wool.set("Properties", createProperties("color", "red"));
+
+        CompoundTag item = createWoolItem();
+        item.set("Slot", new ByteTag((byte) 0));
+
+        CompoundTag chest = new CompoundTag();
+        chest.set("id", new StringTag("minecraft:chest"));
+        chest.set("Items", new ListTag(CompoundTag.class, Arrays.<Tag>asList(item)));
+
+        CompoundTag frame = new CompoundTag();
+        frame.set("id", new StringTag("minecraft:item_frame"));
+        frame.set("Facing", new ByteTag((byte) 2));
+        frame.set("Item", createWoolItem());
+
+        CompoundTag entity = new CompoundTag();
+        entity.set("pos", new DoubleListTag(new double[]{2.5, 0.5, 0.0625}));
+        entity.set("blockPos", new IntListTag(new int[]{2, 0, 0}));
+        entity.set("nbt", frame);
+
+        CompoundTag structure = new CompoundTag();
+        structure.set("DataVersion", new IntTag(1343));
+        structure.set("size", new IntListTag(new int[]{3, 1, 1}));
+        structure.set("palette", new ListTag(CompoundTag.class, Arrays.<Tag>asList(granite, chestState, wool)));
+        structure.set("blocks", new ListTag(CompoundTag.class, Arrays.<Tag>asList(createBlock(0, 0, null), createBlock(1, 1, chest), createBlock(2, 2, null))));
+        structure.set("entities", new ListTag(CompoundTag.class, Arrays.<Tag>asList(entity)));
+        return structure;
+    }
+
+    private static CompoundTag createProperties(String name, String value)
+    {
+        CompoundTag properties = new CompoundTag();
+        properties.set(name, new StringTag(value));
+        return properties;
+    }
+
+    private static CompoundTag createWoolItem()
+    {
+        CompoundTag item = new CompoundTag();
+        item.set("id", new StringTag("minecraft:wool"));
+        item.set("Damage", new ShortTag((short) 14));
+        item.set("Count", new ByteTag((byte) 1));
+        return item;
+    }
+
+    private static CompoundTag createBlock(int x, int state, CompoundTag nbt)
+    {
+        CompoundTag block = new CompoundTag();
+        block.set("pos", new IntListTag(new int[]{x, 0, 0}));
+        block.set("state", new IntTag(state));
+        if (nbt != null)
+            block.set("nbt", nbt);
+        return block;
+    }
+}
@@ -0,0 +1,109 @@
+package org.jared.structures.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackedIntArrayTest
+{
+    @Test
+    public void startsEmptyWithOneBit()
+    {
+        PackedIntArray array = new PackedIntArray(100);
+
+        assertEquals(1, array.getBitsPerEntry());
+        for (int i = 0; i < array.size(); i++)
+        {
+            assertEquals(0, array.get(i));
+        }
+    }
+
+    @Test
+    public void widensAndKeepsEarlierValues()
+    {
+        PackedIntArray array = new PackedIntArray(1000);
+        for (int i = 0; i < array.size(); i++)
+        {
+            array.set(i, i % 2);
+        }
+        assertEquals(1, array.getBitsPerEntry());
+
+        array.set(500, 5);
+        assertEquals(3, array.getBitsPerEntry());
+
+        array.set(999, 700);
+        assertEquals(10, array.getBitsPerEntry());
+
+        for (int i = 0; i < array.size(); i++)
+        {
+            int expected = i == 500 ? 5 : i == 999 ? 700 : i % 2;
+            assertEquals(expected, array.get(i));
+        }
+    }
+
+    @Test
+    public void widthsThatDoNotDivideAWordLeaveNoEntryAcrossWords()
+    {
+        //21 entries of 3 bits fit in a word, so entry 21 starts the second one
+        PackedIntArray array = new PackedIntArray(64, 3);
+        for (int i = 0; i < array.size(); i++)
+        {
+            array.set(i, 7 - i % 8);
+        }
+
+        for (int i = 0; i < array.size(); i++)
+        {
+            assertEquals(7 - i % 8, array.get(i));
+        }
+    }
+
+    @Test
+    public void storesTheFullIntRange()
+    {
+        PackedIntArray array = new PackedIntArray(3);
+        array.set(0, Integer.MAX_VALUE);
+        array.set(2, 1);
+
+        assertEquals(31, array.getBitsPerEntry());
+        assertEquals(Integer.MAX_VALUE, array.get(0));
+        assertEquals(0, array.get(1));
+        assertEquals(1, array.get(2));
+    }
+
+    @Test
+    public void overwritingLeavesNeighboursAlone()
+    {
+        PackedIntArray array = new PackedIntArray(10, 4);
+        for (int i = 0; i < array.size(); i++)
+        {
+            array.set(i, 15);
+        }
+
+        array.set(4, 0);
+        assertEquals(15, array.get(3));
+        assertEquals(0, array.get(4));
+        assertEquals(15, array.get(5));
+    }
+
+    @Test
+    public void bitsFor()
+    {
+        assertEquals(1, PackedIntArray.bitsFor(0));
+        assertEquals(1, PackedIntArray.bitsFor(1));
+        assertEquals(2, PackedIntArray.bitsFor(2));
+        assertEquals(4, PackedIntArray.bitsFor(15));
+        assertEquals(5, PackedIntArray.bitsFor(16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValues()
+    {
+        new PackedIntArray(1).set(0, -1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndicesOutOfBounds()
+    {
+        new PackedIntArray(4).get(4);
+    }
+}
@@ -0,0 +1,216 @@
+package org.jared.structures.util;
+
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.Rail;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BlockTransformTest
+{
+    private static final BlockFace[] HORIZONTAL = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.NORTH_EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_WEST, BlockFace.NORTH_WEST};
+    private static final int[][] POSITIONS = {{0, 0}, {1, 0}, {0, 1}, {3, -2}, {-5, 7}};
+
+    @Test
+    public void rotationsTurnClockwiseSeenFromAbove()
+    {
+        assertEquals(BlockFace.EAST, Rotation.CLOCKWISE_90.rotate(BlockFace.NORTH));
+        assertEquals(BlockFace.SOUTH_EAST, Rotation.CLOCKWISE_90.rotate(BlockFace.NORTH_EAST));
+        assertEquals(BlockFace.WEST, Rotation.COUNTERCLOCKWISE_90.rotate(BlockFace.NORTH));
+        assertEquals(BlockFace.SOUTH, Rotation.CLOCKWISE_180.rotate(BlockFace.NORTH));
+        assertEquals(BlockFace.UP, Rotation.CLOCKWISE_90.rotate(BlockFace.UP));
+
+        //north is -z, so a quarter turn takes it to +x
+        assertEquals(1, Rotation.CLOCKWISE_90.rotateX(0, -1));
+        assertEquals(0, Rotation.CLOCKWISE_90.rotateZ(0, -1));
+    }
+
+    @Test
+    public void rotationsAreAddedAndInverted()
+    {
+        for (Rotation first : Rotation.values())
+        {
+            for (Rotation second : Rotation.values())
+            {
+                Rotation sum = first.add(second);
+                for (int[] position : POSITIONS)
+                {
+                    int x = first.rotateX(position[0], position[1]);
+                    int z = first.rotateZ(position[0], position[1]);
+                    assertEquals(second.rotateX(x, z), sum.rotateX(position[0], position[1]));
+                    assertEquals(second.rotateZ(x, z), sum.rotateZ(position[0], position[1]));
+                }
+            }
+
+            assertSame(Rotation.NONE, first.add(first.inverse()));
+        }
+    }
+
+    @Test
+    public void anglesAreReducedToQuarterTurns()
+    {
+        assertSame(Rotation.CLOCKWISE_90, Rotation.fromAngle(90));
+        assertSame(Rotation.CLOCKWISE_90, Rotation.fromAngle(450));
+        assertSame(Rotation.COUNTERCLOCKWISE_90, Rotation.fromAngle(-90));
+        assertSame(Rotation.CLOCKWISE_180, Rotation.fromAngle(-180));
+        assertEquals(270, Rotation.COUNTERCLOCKWISE_90.getAngle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherAnglesAreRejected()
+    {
+        Rotation.fromAngle(45);
+    }
+
+    @Test
+    public void mirrorsSwapOneAxis()
+    {
+        assertEquals(BlockFace.SOUTH, Mirror.LEFT_RIGHT.mirror(BlockFace.NORTH));
+        assertEquals(BlockFace.EAST, Mirror.LEFT_RIGHT.mirror(BlockFace.EAST));
+        assertEquals(BlockFace.WEST, Mirror.FRONT_BACK.mirror(BlockFace.EAST));
+        assertEquals(BlockFace.NORTH, Mirror.FRONT_BACK.mirror(BlockFace.NORTH));
+        assertEquals(BlockFace.NORTH_WEST, Mirror.FRONT_BACK.mirror(BlockFace.NORTH_EAST));
+
+        for (Mirror mirror : Mirror.values())
+        {
+            for (BlockFace face : HORIZONTAL)
+            {
+                assertEquals(face, mirror.mirror(mirror.mirror(face)));
+            }
+        }
+    }
+
+    @Test
+    public void thenMatchesApplyingBothTransforms()
+    {
+        for (BlockTransform first : all())
+        {
+            for (BlockTransform second : all())
+            {
+                BlockTransform combined = first.then(second);
+                for (int[] position : POSITIONS)
+                {
+                    int x = first.transformX(position[0], position[1]);
+                    int z = first.transformZ(position[0], position[1]);
+                    assertEquals(second.transformX(x, z), combined.transformX(position[0], position[1]));
+                    assertEquals(second.transformZ(x, z), combined.transformZ(position[0], position[1]));
+                }
+
+                for (BlockFace face : HORIZONTAL)
+                {
+                    assertEquals(second.transform(first.transform(face)), combined.transform(face));
+                }
+            }
+        }
+
+        assertSame(BlockTransform.IDENTITY, BlockTransform.IDENTITY.then(BlockTransform.IDENTITY));
+    }
+
+    @Test
+    public void yawFollowsTheFaces()
+    {
+        //yaw 0 faces south, 90 west, 180 north and 270 east
+        BlockFace[] faces = {BlockFace.SOUTH, BlockFace.WEST, BlockFace.NORTH, BlockFace.EAST};
+
+        for (BlockTransform transform : all())
+        {
+            for (int i = 0; i < faces.length; i++)
+            {
+                float yaw = transform.transformYaw(i * 90.0F);
+                assertEquals(transform.transform(faces[i]), faces[(int) (yaw / 90.0F)]);
+            }
+        }
+    }
+
+    @Test
+    public void railShapesFollowTheTransform()
+    {
+        BlockTransform clockwise = BlockTransform.of(Rotation.CLOCKWISE_90, Mirror.NONE);
+        assertEquals(Rail.Shape.EAST_WEST, transform(clockwise, Rail.Shape.NORTH_SOUTH));
+        assertEquals(Rail.Shape.SOUTH_WEST, transform(clockwise, Rail.Shape.SOUTH_EAST));
+        assertEquals(Rail.Shape.ASCENDING_EAST, transform(clockwise, Rail.Shape.ASCENDING_NORTH));
+
+        BlockTransform mirror = BlockTransform.of(Rotation.NONE, Mirror.LEFT_RIGHT);
+        assertEquals(Rail.Shape.ASCENDING_SOUTH, transform(mirror, Rail.Shape.ASCENDING_NORTH));
+        assertEquals(Rail.Shape.NORTH_EAST, transform(mirror, Rail.Shape.SOUTH_EAST));
+        assertEquals(Rail.Shape.EAST_WEST, transform(mirror, Rail.Shape.EAST_WEST));
+
+        //every shape comes back after a full turn
+        for (Rail.Shape shape : Rail.Shape.values())
+        {
+            Rail.Shape turned = shape;
+            for (int i = 0; i < 4; i++)
+            {
+                turned = transform(clockwise, turned);
+            }
+            assertEquals(shape, turned);
+        }
+    }
+
+    @Test
+    public void identityLeavesBlockDataAlone()
+    {
+        Rail rail = createRail(Rail.Shape.SOUTH_EAST);
+        assertSame(rail, BlockTransform.IDENTITY.transform(rail));
+        assertTrue(BlockTransform.IDENTITY.isIdentity());
+    }
+
+    @Test
+    public void unchangedBlockDataIsNotCopied()
+    {
+        Rail rail = createRail(Rail.Shape.NORTH_SOUTH);
+        assertSame(rail, BlockTransform.of(Rotation.CLOCKWISE_180, Mirror.NONE).transform(rail));
+    }
+
+    private static BlockTransform[] all()
+    {
+        BlockTransform[] transforms = new BlockTransform[Mirror.values().length * Rotation.values().length];
+        for (Mirror mirror : Mirror.values())
+        {
+            for (Rotation rotation : Rotation.values())
+            {
+                transforms[mirror.ordinal() * Rotation.values().length + rotation.ordinal()] = BlockTransform.of(rotation, mirror);
+            }
+        }
+
+        return transforms;
+    }
+
+    private static Rail.Shape transform(BlockTransform transform, Rail.Shape shape)
+    {
+        return ((Rail) transform.transform(createRail(shape))).getShape();
+    }
+
+    /**
+     * Only the methods the transform uses are implemented, so the test does not depend on a server.
+     */
+    private static Rail createRail(Rail.Shape shape)
+    {
+        Rail.Shape[] state = {shape};
+        InvocationHandler handler = (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getShape":
+                    return state[0];
+                case "setShape":
+                    state[0] = (Rail.Shape) args[0];
+                    return null;
+                case "getShapes":
+                    return EnumSet.allOf(Rail.Shape.class);
+                case "clone":
+                    return createRail(state[0]);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        };
+
+        return (Rail) Proxy.newProxyInstance(Rail.class.getClassLoader(), new Class<?>[]{Rail.class}, handler);
+    }
+}